@@ -1,10 +1,13 @@
 package de.dandit.cartogram.core;
 
-import java.util.Arrays;
 import java.util.Objects;
+import java.util.stream.IntStream;
 
 import de.dandit.cartogram.core.context.CartogramContext;
+import de.dandit.cartogram.core.context.GridField;
+import de.dandit.cartogram.core.context.LayerData;
 import de.dandit.cartogram.core.context.MapGrid;
+import de.dandit.cartogram.core.context.PackedRings;
 import de.dandit.cartogram.core.context.RegionData;
 import de.dandit.cartogram.core.api.ConvergenceGoalFailedException;
 import de.dandit.cartogram.core.api.ParallelismConfig;
@@ -13,14 +16,36 @@ public class Cartogram {
   private final Integrate integrate;
   private final Density density;
   private final CartogramContext context;
+  private final double[] snapshotTimes;
+  private final SnapshotConsumer snapshotConsumer;
 
   public Cartogram(CartogramContext context) {
+    this(context, new double[0], null);
+  }
+
+  /**
+   * @param snapshotTimes Ascending times in (0,1] of each integration at which the projected rings are handed
+   *                      to the snapshot consumer.
+   * @param snapshotConsumer Receives the snapshots, can be null if no snapshots are wanted.
+   */
+  public Cartogram(CartogramContext context, double[] snapshotTimes, SnapshotConsumer snapshotConsumer) {
     this.context = Objects.requireNonNull(context);
     this.integrate = new Integrate(context);
     this.density = new Density(context);
+    this.snapshotTimes = Objects.requireNonNull(snapshotTimes);
+    this.snapshotConsumer = snapshotConsumer;
+  }
+
+  /**
+   * Receives the rings in L-space as they are projected at some time of an integration. The rings are only valid
+   * during the call and are overwritten by the next snapshot.
+   */
+  public interface SnapshotConsumer {
+    void accept(int integration, double time, PackedRings rings);
   }
 
-  public CartogramContext calculate(ParallelismConfig parallelismConfig, boolean scaleToOriginalPolygonRegion, double maxPermittedAreaError) throws
+  public CartogramContext calculate(ParallelismConfig parallelismConfig, boolean scaleToOriginalPolygonRegion, double maxPermittedAreaError,
+                                    boolean trackGridProjection) throws
       ConvergenceGoalFailedException {
     boolean onlyOneRegionExists = context.isSingleRegion();
     if (onlyOneRegionExists) {
@@ -28,73 +53,66 @@ public class Cartogram {
     }
     MapGrid mapGrid = context.getMapGrid();
     RegionData regionData = context.getRegionData();
+    LayerData layerData = context.getLayerData();
+    calculateRingAreas(parallelismConfig, regionData.getRings(), regionData.getRingArea());
     AreaErrorResult initialAreaError = calculateMaximumAreaError(
       context.getRegionData().getTargetArea(),
       context.getRegionData().getRingsInRegion(),
-      regionData.getRingsX(),
-      regionData.getRingsY());
+      regionData.getRingArea());
     if (initialAreaError.maximumAreaError <= maxPermittedAreaError) {
       context.getLogging().debug("Nothing to do, area already correct.");
-      double[][] cartogramRingsX = context.getRegionData().getCartogramRingsX();
-      double[][] cartogramRingsY = context.getRegionData().getCartogramRingsY();
-      double[][] polygonRingsX = context.getRegionData().getRingsX();
-      double[][] polygonRingsY = context.getRegionData().getRingsY();
-      for (int i = 0; i < polygonRingsX.length; i++) {
-        cartogramRingsX[i] = Arrays.copyOf(polygonRingsX[i], polygonRingsX[i].length);
-        cartogramRingsY[i] = Arrays.copyOf(polygonRingsY[i], polygonRingsY[i].length);
-      }
+      regionData.getCartogramRings().copyFrom(regionData.getRings());
+      layerData.getCartogramParts().copyFrom(layerData.getParts());
       if (scaleToOriginalPolygonRegion) {
-        scaleToOriginalPolygonRegion(mapGrid, cartogramRingsX, cartogramRingsY);
+        scaleToOriginalPolygonRegion(mapGrid, regionData.getCartogramRings());
+        scaleToOriginalPolygonRegion(mapGrid, layerData.getCartogramParts());
       }
+      calculateRingAreas(parallelismConfig, regionData.getCartogramRings(), regionData.getCartogramRingArea());
       return context;
     }
     int lx = mapGrid.getLx();
     int ly = mapGrid.getLy();
-    double[] gridProjectionX = mapGrid.getGridProjectionX();
-    double[] gridProjectionY = mapGrid.getGridProjectionY();
+    GridField gridProjectionX = mapGrid.getGridProjectionX();
+    GridField gridProjectionY = mapGrid.getGridProjectionY();
 
     context.getLogging().debug("Starting integration 1");
-    integrate.ffbIntegrate(parallelismConfig);
-    project(false);
+    integrate.ffbIntegrate(parallelismConfig, createSnapshotListener(parallelismConfig, 1, initialAreaError.summedCartogramArea));
+    project(parallelismConfig, false);
 
-    double[][] cartogramRingsX = regionData.getCartogramRingsX();
-    double[][] cartogramRingsY = regionData.getCartogramRingsY();
     AreaErrorResult error = calculateMaximumAreaError(
       context.getRegionData().getTargetArea(),
       context.getRegionData().getRingsInRegion(),
-      cartogramRingsX,
-      cartogramRingsY);
+      regionData.getCartogramRingArea());
     double maximumAreaError = error.maximumAreaError;
     context.getLogging().debug("max. abs. area error: {0}", maximumAreaError);
 
-    double[] gridProjectionXSwapper = mapGrid.getGridProjectionXSwapper();
-    double[] gridProjectionYSwapper = mapGrid.getGridProjectionYSwapper();
+    GridField gridProjectionXSwapper = mapGrid.getGridProjectionXSwapper();
+    GridField gridProjectionYSwapper = mapGrid.getGridProjectionYSwapper();
     int integrationCounter = 0;
     double lastMaximumAreaError = Double.POSITIVE_INFINITY;
     while (maximumAreaError > maxPermittedAreaError && maximumAreaError < lastMaximumAreaError) {
       density.fillWithDensity();
 
-      System.arraycopy(gridProjectionX, 0, gridProjectionXSwapper, 0, lx * ly);
-      System.arraycopy(gridProjectionY, 0, gridProjectionYSwapper, 0, lx * ly);
-      for (int i = 0; i < lx; i++) {
-        for (int j = 0; j < ly; j++) {
-          gridProjectionX[i * ly + j] = i + 0.5;
-          gridProjectionY[i * ly + j] = j + 0.5;
-        }
+      if (trackGridProjection) {
+        gridProjectionXSwapper.copyFrom(gridProjectionX);
+        gridProjectionYSwapper.copyFrom(gridProjectionY);
       }
+      MapGrid.initProjectionOnGrid(lx, ly, gridProjectionX, gridProjectionY);
       integrationCounter++;
       context.getLogging().debug("Starting integration {0}", integrationCounter);
-      integrate.ffbIntegrate(parallelismConfig);
-      project(true);
+      integrate.ffbIntegrate(parallelismConfig, createSnapshotListener(parallelismConfig, integrationCounter + 1,
+        initialAreaError.summedCartogramArea));
+      project(parallelismConfig, trackGridProjection);
 
-      System.arraycopy(gridProjectionXSwapper, 0, gridProjectionX, 0, lx * ly);
-      System.arraycopy(gridProjectionYSwapper, 0, gridProjectionY, 0, lx * ly);
+      if (trackGridProjection) {
+        gridProjectionX.copyFrom(gridProjectionXSwapper);
+        gridProjectionY.copyFrom(gridProjectionYSwapper);
+      }
       lastMaximumAreaError = maximumAreaError;
       error = calculateMaximumAreaError(
         context.getRegionData().getTargetArea(),
         context.getRegionData().getRingsInRegion(),
-        cartogramRingsX,
-        cartogramRingsY);
+        regionData.getCartogramRingArea());
       maximumAreaError = error.maximumAreaError;
       context.getLogging().debug("Maximum absolute area error: {0}", maximumAreaError);
       if (lastMaximumAreaError < maximumAreaError) {
@@ -105,36 +123,91 @@ public class Cartogram {
     double initialArea = initialAreaError.summedCartogramArea;
     double correctionFactor = Math.sqrt(initialArea / error.summedCartogramArea);
     context.getLogging().debug("Scaling result with factor = {0}", correctionFactor);
-    for (int i = 0; i < cartogramRingsX.length; i++) {
-      scalePolygonsToMatchInitialTotalArea(correctionFactor, lx, ly, cartogramRingsX[i], cartogramRingsY[i]);
-    }
+    context.setResultScalingFactor(correctionFactor);
+    PackedRings cartogramRings = regionData.getCartogramRings();
+    scalePolygonsToMatchInitialTotalArea(correctionFactor, lx, ly, cartogramRings.getX(), cartogramRings.getY());
+    PackedRings cartogramParts = layerData.getCartogramParts();
+    scalePolygonsToMatchInitialTotalArea(correctionFactor, lx, ly, cartogramParts.getX(), cartogramParts.getY());
     if (scaleToOriginalPolygonRegion) {
-      scaleToOriginalPolygonRegion(mapGrid, cartogramRingsX, cartogramRingsY);
+      scaleToOriginalPolygonRegion(mapGrid, cartogramRings);
+      scaleToOriginalPolygonRegion(mapGrid, cartogramParts);
     }
 
+    calculateRingAreas(parallelismConfig, cartogramRings, regionData.getCartogramRingArea());
     double finalMaxAreaError = calculateMaximumAreaError(
       context.getRegionData().getTargetArea(),
       context.getRegionData().getRingsInRegion(),
-      cartogramRingsX,
-      cartogramRingsY).maximumAreaError;
+      regionData.getCartogramRingArea()).maximumAreaError;
     context.getLogging().debug("Final error: {0}", finalMaxAreaError);
     return this.context;
   }
 
+  private Integrate.StepListener createSnapshotListener(ParallelismConfig parallelismConfig, int integration, double initialArea) {
+    if (snapshotConsumer == null || snapshotTimes.length == 0) {
+      return null;
+    }
+    MapGrid mapGrid = context.getMapGrid();
+    int lx = mapGrid.getLx();
+    int ly = mapGrid.getLy();
+    // the integration moves the current rings, which are the cartogram of the previous integration
+    PackedRings rings = context.getRegionData().getRings();
+    PackedRings snapshotRings = rings.createEmptyCopy();
+    double[] snapshotRingArea = new double[rings.getRingCount()];
+    double[] ringsX = rings.getX();
+    double[] ringsY = rings.getY();
+    double[] snapshotX = snapshotRings.getX();
+    double[] snapshotY = snapshotRings.getY();
+    double[] afterX = new double[ringsX.length];
+    double[] afterY = new double[ringsY.length];
+    GridField snapshotPointsX = GridField.wrap(snapshotX);
+    GridField snapshotPointsY = GridField.wrap(snapshotY);
+    GridField afterPointsX = GridField.wrap(afterX);
+    GridField afterPointsY = GridField.wrap(afterY);
+    return (timeBefore, timeAfter, projectionBeforeX, projectionBeforeY, projectionAfterX, projectionAfterY) -> {
+      for (double time : snapshotTimes) {
+        if (time <= timeBefore || time > timeAfter) {
+          continue;
+        }
+        // the projection is linear in the grid, so blending the interpolated positions of both steps is the same
+        // as interpolating in the blended grid; subtracting the interpolated grid point positions (the clamped point)
+        // turns positions into displacements like in project
+        double weight = (time - timeBefore) / (timeAfter - timeBefore);
+        parallelismConfig.apply(IntStream.range(0, ringsX.length))
+          .forEach(k -> {
+            double pointX = ringsX[k];
+            double pointY = ringsY[k];
+            Integrate.interpolate(lx, ly, pointX, pointY, projectionBeforeX, projectionBeforeY,
+              snapshotPointsX, snapshotPointsY, k);
+            Integrate.interpolate(lx, ly, pointX, pointY, projectionAfterX, projectionAfterY,
+              afterPointsX, afterPointsY, k);
+            snapshotX[k] = (1. - weight) * snapshotX[k] + weight * afterX[k]
+              + pointX - Math.min(Math.max(pointX, 0.5), lx - 0.5);
+            snapshotY[k] = (1. - weight) * snapshotY[k] + weight * afterY[k]
+              + pointY - Math.min(Math.max(pointY, 0.5), ly - 0.5);
+          });
+        // scaled to keep the total area like the result, so the last snapshot matches the result
+        calculateRingAreas(parallelismConfig, snapshotRings, snapshotRingArea);
+        double snapshotArea = calculateMaximumAreaError(
+          context.getRegionData().getTargetArea(),
+          context.getRegionData().getRingsInRegion(),
+          snapshotRingArea).summedCartogramArea;
+        scalePolygonsToMatchInitialTotalArea(Math.sqrt(initialArea / snapshotArea), lx, ly, snapshotX, snapshotY);
+        snapshotConsumer.accept(integration, time, snapshotRings);
+      }
+    };
+  }
+
   private void scaleToOriginalPolygonRegion(
       MapGrid mapGrid,
-      double[][] cartogramRingsX,
-      double[][] cartogramRingsY) {
+      PackedRings cartogramRings) {
     double scalingFactor = mapGrid.getInitialScalingFactor();
     double offsetX = mapGrid.getInitialDeltaX();
     double offsetY = mapGrid.getInitialDeltaY();
-    for (int i = 0; i < cartogramRingsX.length; i++) {
-      double[] pX = cartogramRingsX[i];
-      double[] pY = cartogramRingsY[i];
-      for (int j = 0; j < pX.length; j++) {
-        pX[j] = pX[j] * scalingFactor + offsetX;
-        pY[j] = pY[j] * scalingFactor + offsetY;
-      }
+    double[] pX = cartogramRings.getX();
+    double[] pY = cartogramRings.getY();
+    for (int j = 0; j < pX.length; j++) {
+      pX[j] = pX[j] * scalingFactor + offsetX;
+      pY[j] = pY[j] * scalingFactor + offsetY;
     }
   }
 
@@ -145,61 +218,79 @@ public class Cartogram {
     }
   }
 
-  void project(boolean projectGraticule) {
+  void project(ParallelismConfig parallelismConfig, boolean projectGraticule) {
     MapGrid mapGrid = context.getMapGrid();
     RegionData regionData = context.getRegionData();
     int lx = mapGrid.getLx();
     int ly = mapGrid.getLy();
-    double[] gridProjectionX = mapGrid.getGridProjectionX();
-    double[] gridProjectionY = mapGrid.getGridProjectionY();
-
-    double[] displacementX = new double[lx * ly];
-    double[] displacementY = new double[lx * ly];
-    for (int i = 0; i < lx; i++) {
-      for (int j = 0; j < ly; j++) {
-        displacementX[i * ly + j] = gridProjectionX[i * ly + j] - i - 0.5;
-        displacementY[i * ly + j] = gridProjectionY[i * ly + j] - j - 0.5;
-      }
-    }
+    GridField gridProjectionX = mapGrid.getGridProjectionX();
+    GridField gridProjectionY = mapGrid.getGridProjectionY();
 
-    double[][] ringsX = regionData.getRingsX();
-    double[][] ringsY = regionData.getRingsY();
-    int ringsCount = ringsX.length;
-    double[] gridProjectionXSwapper = mapGrid.getGridProjectionXSwapper();
-    double[] gridProjectionYSwapper = mapGrid.getGridProjectionYSwapper();
-    double[][] cartogramRingsX = regionData.getCartogramRingsX();
-    double[][] cartogramRingsY = regionData.getCartogramRingsY();
+    GridField displacementX = mapGrid.getDisplacementX();
+    GridField displacementY = mapGrid.getDisplacementY();
+    parallelismConfig.apply(IntStream.range(0, lx * ly))
+      .forEach(index -> {
+        int i = index / ly;
+        int j = index % ly;
+        displacementX.set(index, gridProjectionX.get(index) - i - 0.5);
+        displacementY.set(index, gridProjectionY.get(index) - j - 0.5);
+      });
 
-    for (int i = 0; i < ringsCount; i++) {
-      double[] polyIX = ringsX[i];
-      double[] polyIY = ringsY[i];
-      for (int j = 0; j < polyIX.length; j++) {
-        double pointIJX = polyIX[j];
-        double pointIJY = polyIY[j];
-        Integrate.interpolate(lx, ly, pointIJX, pointIJY, displacementX, displacementY, cartogramRingsX[i], cartogramRingsY[i], j);
-        cartogramRingsX[i][j] += pointIJX;
-        cartogramRingsY[i][j] += pointIJY;
-      }
-    }
+    GridField gridProjectionXSwapper = mapGrid.getGridProjectionXSwapper();
+    GridField gridProjectionYSwapper = mapGrid.getGridProjectionYSwapper();
+    projectPoints(parallelismConfig, displacementX, displacementY, lx, ly, regionData.getRings(), regionData.getCartogramRings());
+    // layers are not part of the density, but moved by the same displacement to stay aligned with the regions
+    LayerData layerData = context.getLayerData();
+    projectPoints(parallelismConfig, displacementX, displacementY, lx, ly, layerData.getParts(), layerData.getCartogramParts());
+    calculateRingAreas(parallelismConfig, regionData.getCartogramRings(), regionData.getCartogramRingArea());
     if (projectGraticule) {
-      projectGraticule(displacementX, displacementY, lx, ly, gridProjectionXSwapper, gridProjectionYSwapper);
+      projectGraticule(parallelismConfig, displacementX, displacementY, lx, ly, gridProjectionXSwapper, gridProjectionYSwapper);
     }
   }
 
+  private static void projectPoints(
+      ParallelismConfig parallelismConfig,
+      GridField displacementX,
+      GridField displacementY,
+      int lx,
+      int ly,
+      PackedRings rings,
+      PackedRings projectedRings) {
+    double[] ringsX = rings.getX();
+    double[] ringsY = rings.getY();
+    double[] projectedRingsX = projectedRings.getX();
+    double[] projectedRingsY = projectedRings.getY();
+    GridField projectedPointsX = GridField.wrap(projectedRingsX);
+    GridField projectedPointsY = GridField.wrap(projectedRingsY);
+
+    // the points of all rings are packed, so splitting their range balances the work by vertex count
+    // no matter how the vertices are distributed over the rings
+    parallelismConfig.apply(IntStream.range(0, ringsX.length))
+      .forEach(k -> {
+        double pointX = ringsX[k];
+        double pointY = ringsY[k];
+        Integrate.interpolate(lx, ly, pointX, pointY, displacementX, displacementY, projectedPointsX, projectedPointsY, k);
+        projectedRingsX[k] += pointX;
+        projectedRingsY[k] += pointY;
+      });
+  }
+
   private void projectGraticule(
-      double[] displacementX,
-      double[] displacementY,
+      ParallelismConfig parallelismConfig,
+      GridField displacementX,
+      GridField displacementY,
       int lx,
       int ly,
-      double[] projectionX,
-      double[] projectionY) {
-    for (int i = 0; i < lx * ly; i++) {
-      double x = projectionX[i];
-      double y = projectionY[i];
-      Integrate.interpolate(lx, ly, x, y, displacementX, displacementY, projectionX, projectionY, i);
-      projectionX[i] += x;
-      projectionY[i] += y;
-    }
+      GridField projectionX,
+      GridField projectionY) {
+    parallelismConfig.apply(IntStream.range(0, lx * ly))
+      .forEach(i -> {
+        double x = projectionX.get(i);
+        double y = projectionY.get(i);
+        Integrate.interpolate(lx, ly, x, y, displacementX, displacementY, projectionX, projectionY, i);
+        projectionX.set(i, projectionX.get(i) + x);
+        projectionY.set(i, projectionY.get(i) + y);
+      });
   }
 
   public static class AreaErrorResult {
@@ -216,7 +307,19 @@ public class Cartogram {
     }
   }
 
-  public static AreaErrorResult calculateMaximumAreaError(double[] targetArea, int[][] ringsInRegion, double[][] ringsX, double[][] ringsY) {
+  /**
+   * Calculates the oriented area of every ring, each ring is summed up by one thread so the result does not
+   * depend on the parallelism.
+   */
+  static void calculateRingAreas(ParallelismConfig parallelismConfig, PackedRings rings, double[] ringArea) {
+    parallelismConfig.apply(IntStream.range(0, rings.getRingCount()))
+      .forEach(ring -> ringArea[ring] = PolygonUtilities.calculateOrientedArea(rings, ring));
+  }
+
+  /**
+   * @param ringArea The oriented area of each ring, see {@link #calculateRingAreas(ParallelismConfig, PackedRings, double[])}.
+   */
+  public static AreaErrorResult calculateMaximumAreaError(double[] targetArea, int[][] ringsInRegion, double[] ringArea) {
     int ringCount = ringsInRegion.length;
     double[] areaError = new double[ringCount];
     double[] ringsArea = new double[ringCount];
@@ -228,7 +331,7 @@ public class Cartogram {
       if (ringInRegionI.length > 0) {
         ringsArea[i] = 0.0;
         for (int value : ringInRegionI) {
-          ringsArea[i] += PolygonUtilities.calculateOrientedArea(ringsX[value], ringsY[value]);
+          ringsArea[i] += ringArea[value];
         }
       } else {
         ringsArea[i] = -1.;
@@ -7,10 +7,13 @@ import java.util.Map;
 
 import de.dandit.cartogram.core.api.*;
 import de.dandit.cartogram.core.context.CartogramContext;
+import de.dandit.cartogram.core.context.LayerData;
 import de.dandit.cartogram.core.context.MapGrid;
+import de.dandit.cartogram.core.context.MapGridSource;
+import de.dandit.cartogram.core.context.PackedRings;
 import de.dandit.cartogram.core.context.PolygonData;
 import de.dandit.cartogram.core.context.RegionData;
-import de.dandit.cartogram.core.dft.FftPlan2D;
+import de.dandit.cartogram.core.context.RegionRuns;
 
 public class Density {
   /**
@@ -29,6 +32,13 @@ public class Density {
 
   private static final double BLUR_WIDTH = 5e0;
 
+  /**
+   * From this amount of grid cells on the region of each cell is stored run-length encoded per grid row
+   * instead of in a dense grid. The dense grid can be updated incrementally between iterations, the runs
+   * are rasterized from scratch but need only a fraction of the memory.
+   */
+  private static final int REGION_RUNS_MIN_CELLS = 2048 * 2048;
+
   /**
    * Defines a factor to replace a target area of 0 with.
    * Will use the positive minimum target area multiplied by this factor.
@@ -78,7 +88,7 @@ public class Density {
       ringsInPolygonByRegion[regionCounter] = ringsInPolygon;
       regionCounter++;
     }
-    return new PolygonData(ringsX, ringsY, regionIdByRing, ringsInPolygonByRegion);
+    return new PolygonData(PackedRings.pack(ringsX, ringsY), regionIdByRing, ringsInPolygonByRegion);
   }
 
   private static int getRingCount(List<LightPolygon> polygons) {
@@ -87,8 +97,8 @@ public class Density {
       .sum();
   }
 
-  private static MapGrid transformMapToLSpace(FftPlanFactory fftPlanFactory, Logging logging,
-    double mapMinX, double mapMinY, double mapMaxX, double mapMaxY, double[][] ringsX, double[][] ringsY) {
+  private static MapGrid transformMapToLSpace(MapGridSource gridSource, Logging logging, long regionRunsMinCells,
+    double mapMinX, double mapMinY, double mapMaxX, double mapMaxY, PackedRings rings) {
     double newMaxX = 0.5 * ((1.0 + PADDING) * mapMaxX + (1.0 - PADDING) * mapMinX);
     double newMinX = 0.5 * ((1.0 - PADDING) * mapMaxX + (1.0 + PADDING) * mapMinX);
     double newMaxY = 0.5 * ((1.0 + PADDING) * mapMaxY + (1.0 - PADDING) * mapMinY);
@@ -115,74 +125,71 @@ public class Density {
       lx, ly, newMinX, newMinY, newMaxX, newMaxY);
 
 
-    for (double[] pointsX : ringsX) {
-      for (int i = 0; i < pointsX.length; i++) {
-        pointsX[i] = (pointsX[i] - newMinX) / scale;
-      }
+    double[] pointsX = rings.getX();
+    for (int i = 0; i < pointsX.length; i++) {
+      pointsX[i] = (pointsX[i] - newMinX) / scale;
     }
-    for (double[] pointsY : ringsY) {
-      for (int i = 0; i < pointsY.length; i++) {
-        pointsY[i] = (pointsY[i] - newMinY) / scale;
-      }
+    double[] pointsY = rings.getY();
+    for (int i = 0; i < pointsY.length; i++) {
+      pointsY[i] = (pointsY[i] - newMinY) / scale;
     }
-    return new MapGrid(fftPlanFactory, lx, ly, newMinX, newMinY, scale);
+    return gridSource.lease(lx, ly, newMinX, newMinY, scale, (long) lx * ly >= regionRunsMinCells);
   }
 
-  public static void setInsideValuesForPolygon(int region, double[] ringX, double[] ringY, int[][] inside) {
-    double minX = ringX[0];
-    int pointCount = ringX.length;
-    for (double point : ringX) {
-      minX = Math.min(minX, point);
-    }
-    for (int k = 0, n = pointCount - 1; k < pointCount; n = k++) {
-      setInsideValuesBetweenPoints(region, ringX[k], ringY[k], ringX[n], ringY[n],
-        minX, inside);
+  private static void transformToLSpace(MapGrid mapGrid, PackedRings rings) {
+    double scale = mapGrid.getInitialScalingFactor();
+    double[] pointsX = rings.getX();
+    for (int i = 0; i < pointsX.length; i++) {
+      pointsX[i] = (pointsX[i] - mapGrid.getInitialDeltaX()) / scale;
     }
-  }
-
-  private static void setInsideValuesBetweenPoints(int region, double pkX, double pkY, double pnX, double pnY,
-                                                       double ringMinX, int[][] inside) {
-    for (int l = (int) Math.ceil(Math.min(pnY, pkY) - 0.5); l < Math.max(pnY - 0.5, pkY - 0.5); l++) {
-      setInsideValueAtY(region, pkX, pkY, pnX, pnY, l, ringMinX, inside);
+    double[] pointsY = rings.getY();
+    for (int i = 0; i < pointsY.length; i++) {
+      pointsY[i] = (pointsY[i] - mapGrid.getInitialDeltaY()) / scale;
     }
   }
 
-  private static void setInsideValueAtY(int region, double pkX, double pkY, double pnX, double pnY, int l,
-                                            double ringMinX, int[][] inside) {
-    double intersection = (pnX - 0.5 - (pkX - 0.5)) * (l - (pkY - 0.5)) /
-      (pnY - 0.5 - (pkY - 0.5)) + (pkX - 0.5);
-    for (int m = (int) ringMinX; m < intersection; m++) {
-      inside[m][l] = region - inside[m][l] - 1;
-    }
+  /**
+   * @param gridSource Provides the grid of the calculation, which the caller gives back once it is done.
+   */
+  public static CartogramContext initializeContext(MapFeatureData featureData, CartogramConfig config,
+                                                   MapGridSource gridSource) {
+    return initializeContext(featureData, config, gridSource, REGION_RUNS_MIN_CELLS);
   }
 
-  public static CartogramContext initializeContext(MapFeatureData featureData, CartogramConfig config) {
+  /**
+   * @param regionRunsMinCells The amount of grid cells from which the regions are stored as runs, 0 to always and
+   *                           {@link Long#MAX_VALUE} to never use runs.
+   */
+  static CartogramContext initializeContext(MapFeatureData featureData, CartogramConfig config,
+                                            MapGridSource gridSource, long regionRunsMinCells) {
     Logging logging = config.getLogging();
     logging.debug("Amount of regions (before processing): {0}", featureData.getRegions().size());
     RegionData regionData = PolygonUtilities.processMap(logging, featureData, initPolygonData(featureData));
     logging.debug("Amount of regions: {0}", regionData.getRegionId().length);
     MapGrid mapGrid = transformMapToLSpace(
-      config.getFftPlanFactory(),
+      gridSource,
       logging,
+      regionRunsMinCells,
       featureData.getMapMinX(),
       featureData.getMapMinY(),
       featureData.getMapMaxX(),
       featureData.getMapMaxY(),
-      regionData.getRingsX(),
-      regionData.getRingsY());
+      regionData.getRings());
+    LayerData layerData = LayerData.pack(featureData.getLayers());
+    transformToLSpace(mapGrid, layerData.getParts());
 
     int regionCount = regionData.getRingsInRegion().length;
     double[] targetArea = regionData.getTargetArea();
     boolean[] regionHasNaN = regionData.getRegionNaN();
     if (regionCount == 1) {
       targetArea[0] = 1.0;
-      return new CartogramContext(logging, mapGrid, regionData, true);
+      return new CartogramContext(logging, mapGrid, regionData, layerData, true);
     }
 
     double[] density = new double[regionCount];
     double[] initialArea = new double[regionCount];
 
-    interior(mapGrid, regionData);
+    rasterizeRegions(mapGrid, regionData.getRingsInRegion(), regionData.getRings());
 
     Map<Integer,Double> featureTargetArea = featureData.getTargetAreaPerRegion();
 
@@ -206,8 +213,7 @@ public class Density {
     double tempTotalTargetArea = 0.0;
     double totalInitialArea = 0.0;
     int[][] ringInRegion = regionData.getRingsInRegion();
-    double[][] ringsX = regionData.getRingsX();
-    double[][] ringsY = regionData.getRingsY();
+    PackedRings rings = regionData.getRings();
     double[] regionPerimeter = regionData.getRegionPerimeter();
     for (int i = 0; i < regionCount; i++) {
       int[] polyI = ringInRegion[i];
@@ -215,9 +221,7 @@ public class Density {
         tempTotalTargetArea += targetArea[i];
       }
       for (int value : polyI) {
-        initialArea[i] += PolygonUtilities.calculateOrientedArea(
-            ringsX[value],
-            ringsY[value]);
+        initialArea[i] += PolygonUtilities.calculateOrientedArea(rings, value);
       }
       totalInitialArea += initialArea[i];
     }
@@ -227,9 +231,7 @@ public class Density {
     for (int i = 0; i < regionCount; i++) {
       int[] polyI = ringInRegion[i];
       for (int value : polyI) {
-        regionPerimeter[i] += PolygonUtilities.calculatePolygonPerimeter(
-            ringsX[value],
-            ringsY[value]);
+        regionPerimeter[i] += PolygonUtilities.calculatePolygonPerimeter(rings, value);
       }
     }
     logging.displayDoubleArray( "region perimeter", regionPerimeter);
@@ -274,45 +276,79 @@ public class Density {
       density[i] = targetArea[i] / initialArea[i];
     }
 
-    int lx = mapGrid.getLx();
-    int ly = mapGrid.getLy();
-
     initializeRhoWithDensity(
         mapGrid,
         regionCount,
         targetArea,
         density,
-        totalInitialArea,
-        lx,
-        ly);
-    gaussianBlur(config.getFftPlanFactory(), lx, ly, mapGrid.getRhoInit(), mapGrid.getRhoFt(), mapGrid.getRho());
+        totalInitialArea);
+    mapGrid.getGaussianBlur(BLUR_WIDTH).execute();
     mapGrid.getRho().execute();
-    return new CartogramContext(logging, mapGrid, regionData, false);
+    return new CartogramContext(logging, mapGrid, regionData, layerData, false);
   }
 
   private static void initializeRhoWithDensity(
       MapGrid mapGrid,
       int regionCount,
-      double[] targetArea, double[] density, double totalInitialArea, int lx, int ly) {
+      double[] targetArea, double[] density, double totalInitialArea) {
     double summedTargetArea = 0.;
     for (int i = 0; i < regionCount; i++) {
       summedTargetArea += targetArea[i];
     }
     double averageDensity = summedTargetArea / totalInitialArea;
 
-    int[][] gridIndexToRegionIndex = mapGrid.getGridIndexToRegionIndex();
-    double[] rhoInit = mapGrid.getRhoInit();
+    fillRhoInit(mapGrid, density, averageDensity);
+  }
+
+  private static void rasterizeRegions(MapGrid mapGrid, int[][] ringsInRegion, PackedRings rings) {
+    if (mapGrid.isUseRegionRuns()) {
+      mapGrid.setRegionRuns(RegionRasterizer.rasterizeRuns(ringsInRegion, rings, mapGrid.getLx(), mapGrid.getLy()));
+    } else {
+      boolean overlapFree = RegionRasterizer.rasterize(ringsInRegion, rings, mapGrid.getLy(), mapGrid.getGridIndexToRegionIndex());
+      mapGrid.setRegionsOverlapInGrid(!overlapFree);
+    }
+  }
+
+  private static void fillRhoInit(MapGrid mapGrid, double[] density, double averageDensity) {
+    if (mapGrid.isUseRegionRuns()) {
+      fillRhoInit(mapGrid.getRegionRuns(), density, averageDensity, mapGrid.getRhoInit());
+    } else {
+      fillRhoInit(mapGrid.getGridIndexToRegionIndex(), density, averageDensity, mapGrid.getRhoInit());
+    }
+  }
+
+  private static void fillRhoInit(RegionRuns regionRuns, double[] density, double averageDensity, double[] rhoInit) {
+    int lx = regionRuns.getLx();
+    int ly = regionRuns.getLy();
+    int[] rowOffset = regionRuns.getRowOffset();
+    int[] runStart = regionRuns.getRunStart();
+    int[] runEnd = regionRuns.getRunEnd();
+    int[] runRegionIndex = regionRuns.getRunRegionIndex();
+    // the runs are stored per row, but rhoInit is written in its own order with one cursor per row
+    int[] rowRun = Arrays.copyOf(rowOffset, ly);
     for (int i = 0; i < lx; i++) {
       for (int j = 0; j < ly; j++) {
-        if (gridIndexToRegionIndex[i][j] == -1) {
-          rhoInit[i * ly + j] = averageDensity;
-        } else {
-          rhoInit[i * ly + j] = density[gridIndexToRegionIndex[i][j]];
+        int run = rowRun[j];
+        if (run < rowOffset[j + 1] && runEnd[run] <= i) {
+          rowRun[j] = ++run;
         }
+        rhoInit[i * ly + j] = run < rowOffset[j + 1] && runStart[run] <= i
+          ? density[runRegionIndex[run]]
+          : averageDensity;
       }
     }
   }
 
+  private static void fillRhoInit(int[] gridIndexToRegionIndex, double[] density, double averageDensity, double[] rhoInit) {
+    // shifted by one so that cells outside of all regions (index -1) get the average density without branching
+    double[] densityByShiftedRegionIndex = new double[density.length + 1];
+    densityByShiftedRegionIndex[0] = averageDensity;
+    System.arraycopy(density, 0, densityByShiftedRegionIndex, 1, density.length);
+    for (int k = 0; k < rhoInit.length; k++) {
+      rhoInit[k] = densityByShiftedRegionIndex[gridIndexToRegionIndex[k] + 1];
+    }
+  }
+
   private static void applyRegularTargetArea(
       Logging logging,
       int regionCount,
@@ -389,36 +425,32 @@ public class Density {
   void fillWithDensity() {
     MapGrid mapGrid = context.getMapGrid();
     RegionData regionData = context.getRegionData();
-    double[][] ringsX = regionData.getRingsX();
-    double[][] ringsY = regionData.getRingsY();
-    int ringsCount = ringsX.length;
-    double[][] cartogramRingsX = regionData.getCartogramRingsX();
-    double[][] cartogramRingsY = regionData.getCartogramRingsY();
-    double[] rhoInit = mapGrid.getRhoInit();
-    int lx = mapGrid.getLx();
     int ly = mapGrid.getLy();
 
-    for (int i = 0; i < ringsCount; i++) {
-      for (int j = 0; j < ringsX[i].length; j++) {
-        ringsX[i][j] = cartogramRingsX[i][j];
-        ringsY[i][j] = cartogramRingsY[i][j];
-      }
-    }
-
     int[][] ringInRegion = regionData.getRingsInRegion();
     int regionCount = ringInRegion.length;
     double[] targetArea = regionData.getTargetArea();
-    int[][] gridIndexToRegionIndex = mapGrid.getGridIndexToRegionIndex();
+
+    // a dense grid still holds the raster of the rings before the last projection, so only update the cells that changed
+    boolean updated = !mapGrid.isUseRegionRuns()
+      && !mapGrid.isRegionsOverlapInGrid()
+      && RegionRasterizer.update(ringInRegion, regionData.getRings(), regionData.getCartogramRings(), ly, mapGrid.getGridIndexToRegionIndex());
+    if (!updated) {
+      rasterizeRegions(mapGrid, ringInRegion, regionData.getCartogramRings());
+    }
+
+    regionData.swapRings();
+    context.getLayerData().swapParts();
+    // the areas were calculated when the rings got projected
+    double[] ringArea = regionData.getRingArea();
 
     double[] dens = new double[regionCount];
     double[] tempArea = new double[regionCount];
 
-    interior(mapGrid, regionData);
-
     for (int i = 0; i < regionCount; i++) {
       int[] polyI = ringInRegion[i];
       for (int value : polyI) {
-        tempArea[i] += PolygonUtilities.calculateOrientedArea(ringsX[value], ringsY[value]);
+        tempArea[i] += ringArea[value];
       }
     }
     for (int i = 0; i < regionCount; i++) dens[i] = targetArea[i] / tempArea[i];
@@ -433,57 +465,7 @@ public class Density {
     }
     double averageDensity = totalTargetArea / summedTempArea;
 
-    for (int i = 0; i < lx; i++) {
-      for (int j = 0; j < ly; j++) {
-        if (gridIndexToRegionIndex[i][j] == -1) {
-          rhoInit[i * ly + j] = averageDensity;
-        } else {
-          rhoInit[i * ly + j] = dens[gridIndexToRegionIndex[i][j]];
-        }
-      }
-    }
+    fillRhoInit(mapGrid, dens, averageDensity);
     mapGrid.getRho().execute();
   }
-
-  private static void interior(MapGrid mapGrid, RegionData regionData) {
-    double[][] ringsX = regionData.getRingsX();
-    double[][] ringsY = regionData.getRingsY();
-    int[][] gridIndexToRegionIndex = mapGrid.getGridIndexToRegionIndex();
-    int[][] ringsInRegion = regionData.getRingsInRegion();
-    int regionCount = ringsInRegion.length;
-    for (int[] indexToRegionIndex : gridIndexToRegionIndex) {
-      Arrays.fill(indexToRegionIndex, -1);
-    }
-
-    for (int i = 0; i < regionCount; i++) {
-      int[] polyI = ringsInRegion[i];
-      for (int poly : polyI) {
-        setInsideValuesForPolygon(i, ringsX[poly], ringsY[poly],
-            gridIndexToRegionIndex);
-      }
-    }
-  }
-
-  private static void gaussianBlur(FftPlanFactory fftPlanFactory,
-      int lx, int ly, double[] rhoInit, double[] rhoFt, FftPlan2D rho) {
-    FftPlan2D backwardPlan = fftPlanFactory.createDCT3_2D(lx, ly, rhoFt, rhoInit);
-    for (int i = 0; i < lx * ly; i++) {
-      rhoInit[i] /= 4 * lx * ly;
-    }
-    rho.execute();
-    gaussianBlur(lx, ly, rhoFt);
-    backwardPlan.execute();
-  }
-
-  private static void gaussianBlur(int lx, int ly, double[] rhoFt) {
-    double scale = -0.5 * BLUR_WIDTH * BLUR_WIDTH * Math.PI * Math.PI;
-    for (int i = 0; i < lx; i++) {
-      double scaleI = (double) i / lx;
-      for (int j = 0; j < ly; j++) {
-        double scaleJ = (double) j / ly;
-        rhoFt[i * ly + j] *=
-          Math.exp(scale * (scaleI * scaleI + scaleJ * scaleJ));
-      }
-    }
-  }
 }
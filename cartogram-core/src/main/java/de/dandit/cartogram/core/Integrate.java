@@ -6,8 +6,9 @@ import de.dandit.cartogram.core.api.ConvergenceGoalFailedException;
 import de.dandit.cartogram.core.api.Logging;
 import de.dandit.cartogram.core.api.ParallelismConfig;
 import de.dandit.cartogram.core.context.CartogramContext;
+import de.dandit.cartogram.core.context.GridField;
 import de.dandit.cartogram.core.context.MapGrid;
-import de.dandit.cartogram.core.dft.FftPlan2D;
+import de.dandit.cartogram.core.dft.SpectralConvolution2D;
 
 public class Integrate {
   private static final double INC_AFTER_ACC = 1.1;
@@ -20,7 +21,7 @@ public class Integrate {
   }
 
   // This is the bottleneck, it is in almost every inner loop! Find ways to improve it.
-  static void interpolate(int lx, int ly, double x, double y, double[] gridX, double[] gridY, double[] outX, double[] outY, int outIndex) {
+  static void interpolate(int lx, int ly, double x, double y, GridField gridX, GridField gridY, GridField outX, GridField outY, int outIndex) {
     final double xRounded = (long) (x + 0.5) - 0.5;
     final double yRounded = (long) (y + 0.5) - 0.5;
     final double x0 = 0. >= xRounded ? 0. : xRounded;
@@ -40,76 +41,59 @@ public class Integrate {
     final double scale11 = deltaX * deltaY;
     final int x0Offset = x0I * ly;
     final int x1Offset = x1I * ly;
-    outX[outIndex] = scale00 * gridX[x0Offset + y0I] + scale01 * gridX[x0Offset + y1I]
-      + scale10 * gridX[x1Offset + y0I] + scale11 * gridX[x1Offset + y1I];
-    outY[outIndex] = scale00 * gridY[x0Offset + y0I] + scale01 * gridY[x0Offset + y1I]
-      + scale10 * gridY[x1Offset + y0I] + scale11 * gridY[x1Offset + y1I];
+    outX.set(outIndex, scale00 * gridX.get(x0Offset + y0I) + scale01 * gridX.get(x0Offset + y1I)
+      + scale10 * gridX.get(x1Offset + y0I) + scale11 * gridX.get(x1Offset + y1I));
+    outY.set(outIndex, scale00 * gridY.get(x0Offset + y0I) + scale01 * gridY.get(x0Offset + y1I)
+      + scale10 * gridY.get(x1Offset + y0I) + scale11 * gridY.get(x1Offset + y1I));
   }
 
   void initGridSpeed() {
     MapGrid mapGrid = context.getMapGrid();
-    int lx = mapGrid.getLx();
-    int ly = mapGrid.getLy();
-    double[] rhoFt = mapGrid.getRhoFt();
-
-    int initialRhoFt = 4 * lx * ly;
-    for (int i = 0; i < lx * ly; i++) {
-      rhoFt[i] /= initialRhoFt;
-    }
-
-    FftPlan2D gridFluxInitXPlan = mapGrid.getGridFluxInitX();
-    FftPlan2D gridFluxInitYPlan = mapGrid.getGridFluxInitY();
-    double[] gridFluxInitX = gridFluxInitXPlan.getOutputData();
-    double[] gridFluxInitY = gridFluxInitYPlan.getOutputData();
-    for (int i = 0; i < lx - 1; i++) {
-      for (int j = 0; j < ly; j++) {
-        gridFluxInitX[i * ly + j] =
-            -rhoFt[(i + 1) * ly + j] /
-                (Math.PI * (((double) i + 1) / (double) lx + (j / ((double) i + 1))
-                    * (j / (double) ly)
-                    * ((double) lx / (double) ly)));
-      }
-    }
-    for (int j = 0; j < ly; j++) {
-      gridFluxInitX[(lx - 1) * ly + j] = 0.0;
-    }
-    for (int i = 0; i < lx; i++) {
-      for (int j = 0; j < ly - 1; j++) {
-        gridFluxInitY[i * ly + j] =
-            -rhoFt[i * ly + j + 1] /
-                (Math.PI * (((double) i / (j + 1)) * ((double) i / (double) lx) * ((double) ly / (double) lx)
-                    + (j + 1) / (double) ly));
-      }
-    }
-    for (int i = 0; i < lx; i++) {
-      gridFluxInitY[i * ly + ly - 1] = 0.0;
-    }
+    SpectralConvolution2D.executeAll(mapGrid.getGridFluxInitX(), mapGrid.getGridFluxInitY());
+  }
 
-    gridFluxInitXPlan.execute();
-    gridFluxInitYPlan.execute();
+  /**
+   * Observes the integration after each accepted time step, while both the projection before and after the step are
+   * available.
+   */
+  interface StepListener {
+    void onAcceptedStep(double timeBefore, double timeAfter,
+                        GridField projectionBeforeX, GridField projectionBeforeY,
+                        GridField projectionAfterX, GridField projectionAfterY);
   }
 
-  void ffbIntegrate(ParallelismConfig parallelismConfig) throws ConvergenceGoalFailedException {
+  void ffbIntegrate(ParallelismConfig parallelismConfig, StepListener stepListener) throws ConvergenceGoalFailedException {
     MapGrid mapGrid = context.getMapGrid();
-    int lx = mapGrid.getLx();
-    int ly = mapGrid.getLy();
-    double[] gridProjectionX = mapGrid.getGridProjectionX();
-    double[] gridProjectionY = mapGrid.getGridProjectionY();
-
-    double[] gridSpeedX = mapGrid.getGridSpeedX();
-    double[] gridSpeedY = mapGrid.getGridSpeedY();
+    GridField gridProjectionX = mapGrid.getGridProjectionX();
+    GridField gridProjectionY = mapGrid.getGridProjectionY();
 
-    double[] eulX = new double[lx * ly];
-    double[] eulY = new double[lx * ly];
-    double[] midX = new double[lx * ly];
-    double[] midY = new double[lx * ly];
+    GridField gridSpeedX = mapGrid.getGridSpeedX();
+    GridField gridSpeedY = mapGrid.getGridSpeedY();
 
-    double[] interpolatedGridSpeedX = new double[lx * ly];
-    double[] interpolatedGridSpeedY = new double[lx * ly];
-
-    double[] interpolatedHalfGridSpeedX = new double[lx * ly];
-    double[] interpolatedHalfGridSpeedY = new double[lx * ly];
+    integrate(parallelismConfig, stepListener, mapGrid, gridProjectionX, gridProjectionY, gridSpeedX, gridSpeedY,
+      mapGrid.getEulerX(), mapGrid.getEulerY(), mapGrid.getMidpointX(), mapGrid.getMidpointY(),
+      mapGrid.getInterpolatedSpeedX(), mapGrid.getInterpolatedSpeedY(),
+      mapGrid.getInterpolatedHalfSpeedX(), mapGrid.getInterpolatedHalfSpeedY());
+  }
 
+  private void integrate(
+    ParallelismConfig parallelismConfig,
+    StepListener stepListener,
+    MapGrid mapGrid,
+    GridField gridProjectionX,
+    GridField gridProjectionY,
+    GridField gridSpeedX,
+    GridField gridSpeedY,
+    GridField eulX,
+    GridField eulY,
+    GridField midX,
+    GridField midY,
+    GridField interpolatedGridSpeedX,
+    GridField interpolatedGridSpeedY,
+    GridField interpolatedHalfGridSpeedX,
+    GridField interpolatedHalfGridSpeedY) throws ConvergenceGoalFailedException {
+    int lx = mapGrid.getLx();
+    int ly = mapGrid.getLy();
     initGridSpeed();
     double t = 0.0;
     int iterationCounter = 0;
@@ -128,18 +112,18 @@ public class Integrate {
         double currentTimeStep = deltaT;
         IntStream.range(0, lx * ly)
             .forEach(k -> {
-              eulX[k] = gridProjectionX[k] +   interpolatedGridSpeedX[k] * currentTimeStep;
-              eulY[k] = gridProjectionY[k] +   interpolatedGridSpeedY[k] * currentTimeStep;
+              eulX.set(k, gridProjectionX.get(k) + interpolatedGridSpeedX.get(k) * currentTimeStep);
+              eulY.set(k, gridProjectionY.get(k) + interpolatedGridSpeedY.get(k) * currentTimeStep);
             });
 
         calculateSpeedOnGrid(t + 0.5 * deltaT, parallelismConfig);
 
         accept = true;
         for (int k = 0; k < lx * ly; k++) {
-          if (gridProjectionX[k] + 0.5 * deltaT *   interpolatedGridSpeedX[k] < 0.0 ||
-            gridProjectionX[k] + 0.5 * deltaT *   interpolatedGridSpeedX[k] > lx ||
-            gridProjectionY[k] + 0.5 * deltaT *   interpolatedGridSpeedY[k] < 0.0 ||
-            gridProjectionY[k] + 0.5 * deltaT *   interpolatedGridSpeedY[k] > ly) {
+          if (gridProjectionX.get(k) + 0.5 * deltaT * interpolatedGridSpeedX.get(k) < 0.0 ||
+            gridProjectionX.get(k) + 0.5 * deltaT * interpolatedGridSpeedX.get(k) > lx ||
+            gridProjectionY.get(k) + 0.5 * deltaT * interpolatedGridSpeedY.get(k) < 0.0 ||
+            gridProjectionY.get(k) + 0.5 * deltaT * interpolatedGridSpeedY.get(k) > ly) {
             accept = false;
             nonAcceptedDtsCount++;
             deltaT *= DEC_AFTER_NOT_ACC;
@@ -175,10 +159,13 @@ public class Integrate {
       if (iterationCounter % 10 == 0) {
         logging.debug("iter = {0}, t = {1,number,#.############}, deltaT = {2,number,#.#############}", iterationCounter, t, deltaT);
       }
+      if (stepListener != null) {
+        stepListener.onAcceptedStep(t, t + deltaT, gridProjectionX, gridProjectionY, midX, midY);
+      }
       t += deltaT;
       iterationCounter++;
-      System.arraycopy(midX, 0, gridProjectionX, 0, lx * ly);
-      System.arraycopy(midY, 0, gridProjectionY, 0, lx * ly);
+      gridProjectionX.copyFrom(midX);
+      gridProjectionY.copyFrom(midY);
       deltaT *= INC_AFTER_ACC;
 
     } while (t < 1.0);
@@ -193,48 +180,48 @@ public class Integrate {
   private static boolean integrateAcceptedTimestep(
     ParallelismConfig parallelismConfig,
     double deltaT,
-    double[] interpolatedGridSpeedX,
-    double[] interpolatedHalfGridSpeedX,
-    double[] interpolatedGridSpeedY,
-    double[] interpolatedHalfGridSpeedY,
-    double[] eulX,
-    double[] eulY,
-    double[] midX,
-    double[] midY,
+    GridField interpolatedGridSpeedX,
+    GridField interpolatedHalfGridSpeedX,
+    GridField interpolatedGridSpeedY,
+    GridField interpolatedHalfGridSpeedY,
+    GridField eulX,
+    GridField eulY,
+    GridField midX,
+    GridField midY,
     int lx,
     int ly,
-    double[] projX,
-    double[] projY,
-    double[] gridSpeedX,
-    double[] gridSpeedY,
+    GridField projX,
+    GridField projY,
+    GridField gridSpeedX,
+    GridField gridSpeedY,
     double absoluteTolerance) {
     return parallelismConfig.apply(IntStream.range(0, lx * ly))
       .allMatch(k -> {
         interpolate(
           lx,
           ly,
-          projX[k] + 0.5 * deltaT * interpolatedGridSpeedX[k],
-          projY[k] + 0.5 * deltaT * interpolatedGridSpeedY[k],
+          projX.get(k) + 0.5 * deltaT * interpolatedGridSpeedX.get(k),
+          projY.get(k) + 0.5 * deltaT * interpolatedGridSpeedY.get(k),
           gridSpeedX,
           gridSpeedY,
           interpolatedHalfGridSpeedX,
           interpolatedHalfGridSpeedY,
           k);
-        double midXK = projX[k] + interpolatedHalfGridSpeedX[k] * deltaT;
+        double midXK = projX.get(k) + interpolatedHalfGridSpeedX.get(k) * deltaT;
         boolean notInBoundX = midXK < 0.0 || midXK > lx;
         if (notInBoundX) {
           return false;
         }
 
-        double midYK = projY[k] + interpolatedHalfGridSpeedY[k] * deltaT;
+        double midYK = projY.get(k) + interpolatedHalfGridSpeedY.get(k) * deltaT;
         boolean notInBoundY = midYK < 0.0 || midYK > ly;
         if (notInBoundY) {
           return false;
         }
-        midX[k] = midXK;
-        midY[k] = midYK;
-        double midEulDiffX = midXK - eulX[k];
-        double midEulDiffY = midYK - eulY[k];
+        midX.set(k, midXK);
+        midY.set(k, midYK);
+        double midEulDiffX = midXK - eulX.get(k);
+        double midEulDiffY = midYK - eulY.get(k);
 
         return midEulDiffX * midEulDiffX + midEulDiffY * midEulDiffY <= absoluteTolerance;
       });
@@ -242,35 +229,35 @@ public class Integrate {
 
   private static void interpolateSpeed(
     ParallelismConfig parallelismConfig,
-    double[] interpolatedSpeedX,
-    double[] interpolatedSpeedY,
+    GridField interpolatedSpeedX,
+    GridField interpolatedSpeedY,
     int lx,
     int ly,
-    double[] gridProjectionX,
-    double[] gridProjectionY,
-    double[] gridSpeedX,
-    double[] gridSpeedY) {
+    GridField gridProjectionX,
+    GridField gridProjectionY,
+    GridField gridSpeedX,
+    GridField gridSpeedY) {
     parallelismConfig.apply(IntStream.range(0, lx * ly))
-      .forEach(k -> interpolate(lx, ly, gridProjectionX[k], gridProjectionY[k], gridSpeedX, gridSpeedY, interpolatedSpeedX, interpolatedSpeedY, k));
+      .forEach(k -> interpolate(lx, ly, gridProjectionX.get(k), gridProjectionY.get(k), gridSpeedX, gridSpeedY, interpolatedSpeedX, interpolatedSpeedY, k));
   }
 
   void calculateSpeedOnGrid(double t, ParallelismConfig parallelismConfig) {
     MapGrid mapGrid = context.getMapGrid();
     int lx = mapGrid.getLx();
     int ly = mapGrid.getLy();
-    double[] gridSpeedX = mapGrid.getGridSpeedX();
-    double[] gridSpeedY = mapGrid.getGridSpeedY();
+    GridField gridSpeedX = mapGrid.getGridSpeedX();
+    GridField gridSpeedY = mapGrid.getGridSpeedY();
     double[] rhoInit = mapGrid.getRhoInit();
     double[] gridFluxInitX = mapGrid.getGridFluxInitX().getOutputData();
     double[] gridFluxInitY = mapGrid.getGridFluxInitY().getOutputData();
-    double rhoFt0 = -mapGrid.getRhoFt()[0];
+    double rhoFt0 = -mapGrid.getRhoFt()[0] / (4. * lx * ly); // the spectrum is unnormalized
     double remainingT = 1. - t;
 
     parallelismConfig.apply(IntStream.range(0, lx * ly))
       .forEach(k -> {
         double rho = rhoFt0 + remainingT * (-rhoInit[k] - rhoFt0);
-        gridSpeedX[k] = gridFluxInitX[k] / rho;
-        gridSpeedY[k] = gridFluxInitY[k] / rho;
+        gridSpeedX.set(k, gridFluxInitX[k] / rho);
+        gridSpeedY.set(k, gridFluxInitY[k] / rho);
       });
   }
 }
@@ -1,6 +1,7 @@
 package de.dandit.cartogram.core;
 
 import de.dandit.cartogram.core.api.Region;
+import de.dandit.cartogram.core.context.PackedRings;
 import de.dandit.cartogram.core.context.PolygonData;
 import de.dandit.cartogram.core.context.RegionData;
 import de.dandit.cartogram.core.api.Logging;
@@ -25,35 +26,54 @@ public class PolygonUtilities {
 
   // positive for clockwise oriented order, negative for ccw oriented order
   public static double calculateOrientedArea(double[] ringX, double[] ringY) {
+    return calculateOrientedArea(ringX, ringY, 0, ringX.length);
+  }
+
+  /**
+   * Calculates the oriented area of the ring whose points are at the indices from (inclusive) to to (exclusive).
+   */
+  public static double calculateOrientedArea(double[] ringX, double[] ringY, int from, int to) {
     double area = 0.0;
-    int pointCount = ringX.length;
-    for (int i = 0; i < pointCount - 1; i++) {
+    for (int i = from; i < to - 1; i++) {
       area -= 0.5 * (ringX[i] + ringX[i + 1]) * (ringY[i + 1] - ringY[i]);
     }
-    area -= 0.5 * (ringX[pointCount - 1] + ringX[0]) *
-      (ringY[0] - ringY[pointCount - 1]);
+    area -= 0.5 * (ringX[to - 1] + ringX[from]) *
+      (ringY[from] - ringY[to - 1]);
     return area;
   }
 
+  public static double calculateOrientedArea(PackedRings rings, int ring) {
+    return calculateOrientedArea(rings.getX(), rings.getY(), rings.getRingStart(ring), rings.getRingEnd(ring));
+  }
+
   public static double calculatePolygonPerimeter(double[] ringX, double[] ringY) {
-    int pointCount = ringX.length;
+    return calculatePolygonPerimeter(ringX, ringY, 0, ringX.length);
+  }
+
+  /**
+   * Calculates the perimeter of the ring whose points are at the indices from (inclusive) to to (exclusive).
+   */
+  public static double calculatePolygonPerimeter(double[] ringX, double[] ringY, int from, int to) {
     double perimeter = 0.0;
-    for (int i = 0; i < pointCount - 1; i++) {
+    for (int i = from; i < to - 1; i++) {
       perimeter += Math.sqrt((ringX[i + 1] - ringX[i]) * (ringX[i + 1] - ringX[i]) +
         (ringY[i + 1] - ringY[i]) * (ringY[i + 1] - ringY[i]));
     }
-    return perimeter + Math.sqrt((ringX[0] - ringX[pointCount - 1]) * (ringX[0] - ringX[pointCount - 1]) +
-      (ringY[0] - ringY[pointCount - 1]) * (ringY[0] - ringY[pointCount - 1]));
+    return perimeter + Math.sqrt((ringX[from] - ringX[to - 1]) * (ringX[from] - ringX[to - 1]) +
+      (ringY[from] - ringY[to - 1]) * (ringY[from] - ringY[to - 1]));
+  }
+
+  public static double calculatePolygonPerimeter(PackedRings rings, int ring) {
+    return calculatePolygonPerimeter(rings.getX(), rings.getY(), rings.getRingStart(ring), rings.getRingEnd(ring));
   }
 
   private static RegionData createRegionData(PolygonData polygonData) {
-    return new RegionData(polygonData.getRegionIdByRing(), polygonData.getPolygonRingsX(), polygonData.getPolygonRingsY(), polygonData.getRingsInPolygonByRegion());
+    return new RegionData(polygonData.getRegionIdByRing(), polygonData.getPolygonRings(), polygonData.getRingsInPolygonByRegion());
   }
 
   public static PolygonData removeTinyPolygonsInNonLSpace(Logging logging, MapFeatureData mapData, PolygonData polygonData) {
-    double[][] ringsX = polygonData.getPolygonRingsX();
-    double[][] ringsY = polygonData.getPolygonRingsY();
-    int ringCount = ringsX.length;
+    PackedRings rings = polygonData.getPolygonRings();
+    int ringCount = rings.getRingCount();
 
     double mapMinX = mapData.getMapMinX();
     double mapMinY = mapData.getMapMinY();
@@ -65,10 +85,10 @@ public class PolygonUtilities {
     logging.debug("Amount of polygons: {0}", ringCount);
     logging.debug("Relative area threshold: {0}", relativeTinyAreaThreshold);
     for (int ringIndex = 0; ringIndex < ringCount; ringIndex++) {
-      double orientedArea = calculateOrientedArea(ringsX[ringIndex], ringsY[ringIndex]);
+      double orientedArea = calculateOrientedArea(rings, ringIndex);
       double currentArea = Math.abs(orientedArea);
       logging.debug("Polygon {3} (id= {0}) with {1} points has area |{2,number,#.######E0}|",
-        polygonData.getRegionIdByRing()[ringIndex], ringsX[ringIndex].length, orientedArea, ringIndex);
+        polygonData.getRegionIdByRing()[ringIndex], rings.getRingEnd(ringIndex) - rings.getRingStart(ringIndex), orientedArea, ringIndex);
       ringHasTinyArea[ringIndex] = currentArea < relativeTinyAreaThreshold;
     }
     int nonTinyRingCount = 0;
@@ -81,7 +101,7 @@ public class PolygonUtilities {
     if (nonTinyRingCount < ringCount) {
       logging.debug("Removing tiny polygons.");
 
-      int[] nonTinyRingsCount = new int[nonTinyRingCount];
+      int[] nonTinyRingOffset = new int[nonTinyRingCount + 1];
       int[] nonTinyRegionIdByRing = new int[nonTinyRingCount];
       nonTinyRingCount = 0;
       int[] regionIdByRing = polygonData.getRegionIdByRing();
@@ -104,60 +124,32 @@ public class PolygonUtilities {
         int[] ringsInPolygon = ringsInPolygonByRegion[regionIndex];
         if (!ringHasTinyArea[ringIndex]) {
           nonTinyRingsInPolygonByRegion.get(regionIndex).add(ringsInPolygon[polygonIndex]);
-          nonTinyRingsCount[nonTinyRingCount] = ringsX[ringIndex].length;
+          nonTinyRingOffset[nonTinyRingCount + 1] = nonTinyRingOffset[nonTinyRingCount]
+            + rings.getRingEnd(ringIndex) - rings.getRingStart(ringIndex);
           nonTinyRegionIdByRing[nonTinyRingCount] = regionId;
           nonTinyRingCount++;
         }
       }
-      double[][] nonTinyRingsX = new double[nonTinyRingCount][];
-      double[][] nonTinyRingsY = new double[nonTinyRingCount][];
-      for (int ringIndex = 0; ringIndex < nonTinyRingCount; ringIndex++) {
-        nonTinyRingsX[ringIndex] = new double[nonTinyRingsCount[ringIndex]];
-        nonTinyRingsY[ringIndex] = new double[nonTinyRingsCount[ringIndex]];
-      }
+      double[] nonTinyX = new double[nonTinyRingOffset[nonTinyRingCount]];
+      double[] nonTinyY = new double[nonTinyRingOffset[nonTinyRingCount]];
       nonTinyRingCount = 0;
       for (int ringIndex = 0; ringIndex < ringCount; ringIndex++) {
         if (!ringHasTinyArea[ringIndex]) {
-          for (int pointIndex = 0;
-               pointIndex < ringsX[ringIndex].length;
-               pointIndex++) {
-            nonTinyRingsX[nonTinyRingCount][pointIndex]
-              = ringsX[ringIndex][pointIndex];
-            nonTinyRingsY[nonTinyRingCount][pointIndex]
-                = ringsY[ringIndex][pointIndex];
-          }
+          int ringStart = rings.getRingStart(ringIndex);
+          int pointCount = rings.getRingEnd(ringIndex) - ringStart;
+          System.arraycopy(rings.getX(), ringStart, nonTinyX, nonTinyRingOffset[nonTinyRingCount], pointCount);
+          System.arraycopy(rings.getY(), ringStart, nonTinyY, nonTinyRingOffset[nonTinyRingCount], pointCount);
           nonTinyRingCount++;
         }
       }
 
-      return createOverriddenPolygons(nonTinyRingCount, nonTinyRingsX, nonTinyRingsY, nonTinyRingsCount, nonTinyRegionIdByRing,
+      return new PolygonData(
+        new PackedRings(nonTinyRingOffset, nonTinyX, nonTinyY),
+        nonTinyRegionIdByRing,
         nonTinyRingsInPolygonByRegion.stream()
           .map(a -> a.stream().mapToInt(b -> b).toArray())
           .toArray(int[][]::new));
     }
     return polygonData;
   }
-
-  private static PolygonData createOverriddenPolygons(int nonTinyRingCount, double[][] nonTinyRingX,
-                                                      double[][] nonTinyRingY, int[] nonTinyRingsCount, int[] nonTinyRegionIdByRing, int[][] ringsInPolygonByRegion) {
-    int[] regionIdByRing = new int[nonTinyRingCount];
-    int[] ringCount = new int[nonTinyRingCount];
-    for (int ringIndex = 0; ringIndex < nonTinyRingCount; ringIndex++) {
-      regionIdByRing[ringIndex] = nonTinyRegionIdByRing[ringIndex];
-      ringCount[ringIndex] = nonTinyRingsCount[ringIndex];
-    }
-    double[][] ringsX = new double[nonTinyRingCount][];
-    double[][] ringsY = new double[nonTinyRingCount][];
-    for (int ringIndex = 0; ringIndex < nonTinyRingCount; ringIndex++) {
-      ringsX[ringIndex] = new double[ringCount[ringIndex]];
-      ringsY[ringIndex] = new double[ringCount[ringIndex]];
-    }
-    for (int ringIndex = 0; ringIndex < nonTinyRingCount; ringIndex++) {
-      for (int pointIndex = 0; pointIndex < ringCount[ringIndex]; pointIndex++) {
-        ringsX[ringIndex][pointIndex] = nonTinyRingX[ringIndex][pointIndex];
-        ringsY[ringIndex][pointIndex] = nonTinyRingY[ringIndex][pointIndex];
-      }
-    }
-    return new PolygonData(ringsX, ringsY, regionIdByRing, ringsInPolygonByRegion);
-  }
 }
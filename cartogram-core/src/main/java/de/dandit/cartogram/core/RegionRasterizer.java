@@ -0,0 +1,330 @@
+package de.dandit.cartogram.core;
+
+import java.util.Arrays;
+
+import de.dandit.cartogram.core.context.PackedRings;
+import de.dandit.cartogram.core.context.RegionRuns;
+
+/**
+ * Marks each grid cell with the index of the region whose rings contain the cell's center, or -1
+ * if the cell is outside of all regions. All rings of a region are combined using the even-odd rule,
+ * so interior rings cut holes into their exterior ring.<br>
+ * For each grid row l (cell centers at y=l+0.5) the crossings of the region's ring edges with that row are
+ * collected and the cells between two consecutive crossings are filled as one span.<br>
+ * When updating an existing raster the crossings of the previous rings and of the new rings are merged per row.
+ * Only cells whose membership changed (the symmetric difference of both) are written, which between late outer
+ * iterations is not much more than the cells along the region boundaries. The rows that need to be visited
+ * are bounded by the bounding boxes of the previous and new rings of each region.
+ */
+public class RegionRasterizer {
+
+  private static final int NO_REGION = -1;
+
+  /**
+   * Clears the whole grid and rasterizes all regions. If regions overlap, a cell covered by multiple regions
+   * gets the value r - v - 1 applied for each covering region r in ascending order (starting with v=-1).
+   *
+   * @param ringsInRegion The indices of the rings belonging to each region.
+   * @param rings The coordinates of the rings in L-space.
+   * @param ly The grid's height.
+   * @param gridIndexToRegionIndex The grid to fill, cell (x,y) is at index x*ly+y.
+   * @return True if no cell is covered by more than one region.
+   */
+  public static boolean rasterize(int[][] ringsInRegion, PackedRings rings, int ly, int[] gridIndexToRegionIndex) {
+    Arrays.fill(gridIndexToRegionIndex, NO_REGION);
+    boolean overlapFree = true;
+    for (int region = 0; region < ringsInRegion.length; region++) {
+      int[] regionRings = ringsInRegion[region];
+      int rowStart = getFirstRow(regionRings, rings);
+      int rowEnd = getRowEnd(regionRings, rings);
+      if (rowStart >= rowEnd) {
+        continue;
+      }
+      RowCrossings crossings = RowCrossings.collect(regionRings, rings, rowStart, rowEnd);
+      for (int row = 0; row < rowEnd - rowStart; row++) {
+        int l = rowStart + row;
+        double[] crossingX = crossings.crossingX;
+        for (int i = crossings.rowOffset[row]; i + 1 < crossings.rowOffset[row + 1]; i += 2) {
+          // cell m is left of a crossing c iff m < c
+          for (int m = (int) Math.ceil(crossingX[i]); m < crossingX[i + 1]; m++) {
+            int previous = gridIndexToRegionIndex[m * ly + l];
+            overlapFree &= previous == NO_REGION;
+            gridIndexToRegionIndex[m * ly + l] = region - previous - 1;
+          }
+        }
+      }
+    }
+    return overlapFree;
+  }
+
+  /**
+   * Rasterizes all regions into runs of cells per grid row instead of a dense grid. The result has the same
+   * region index for each cell as {@link #rasterize(int[][], PackedRings, int, int[])}, including
+   * cells covered by overlapping regions.
+   *
+   * @param ringsInRegion The indices of the rings belonging to each region.
+   * @param rings The coordinates of the rings in L-space.
+   * @param lx The grid's width.
+   * @param ly The grid's height.
+   * @return The runs of cells with the same region index per row.
+   */
+  public static RegionRuns rasterizeRuns(int[][] ringsInRegion, PackedRings rings, int lx, int ly) {
+    SpanBuffer spans = new SpanBuffer();
+    for (int region = 0; region < ringsInRegion.length; region++) {
+      int[] regionRings = ringsInRegion[region];
+      int rowStart = getFirstRow(regionRings, rings);
+      int rowEnd = getRowEnd(regionRings, rings);
+      if (rowStart >= rowEnd) {
+        continue;
+      }
+      RowCrossings crossings = RowCrossings.collect(regionRings, rings, rowStart, rowEnd);
+      for (int row = 0; row < rowEnd - rowStart; row++) {
+        double[] crossingX = crossings.crossingX;
+        for (int i = crossings.rowOffset[row]; i + 1 < crossings.rowOffset[row + 1]; i += 2) {
+          int from = (int) Math.ceil(crossingX[i]);
+          int to = (int) Math.ceil(crossingX[i + 1]);
+          if (from < to) {
+            spans.add(region, rowStart + row, from, to);
+          }
+        }
+      }
+    }
+    // group the spans by row, keeping them in ascending region order within each row
+    int[] spanRowOffset = new int[ly + 1];
+    for (int i = 0; i < spans.size; i += 4) {
+      spanRowOffset[spans.data[i + 1] + 1]++;
+    }
+    for (int l = 0; l < ly; l++) {
+      spanRowOffset[l + 1] += spanRowOffset[l];
+    }
+    int[] spansByRow = new int[spanRowOffset[ly]];
+    int[] rowFill = Arrays.copyOf(spanRowOffset, ly);
+    for (int i = 0; i < spans.size; i += 4) {
+      spansByRow[rowFill[spans.data[i + 1]]++] = i;
+    }
+
+    // overlapping spans of a row are resolved on a scratch row so the runs match the dense raster exactly
+    int[] rowValues = new int[lx];
+    Arrays.fill(rowValues, NO_REGION);
+    int[] runRowOffset = new int[ly + 1];
+    SpanBuffer runs = new SpanBuffer();
+    for (int l = 0; l < ly; l++) {
+      int from = lx;
+      int to = 0;
+      for (int k = spanRowOffset[l]; k < spanRowOffset[l + 1]; k++) {
+        int span = spansByRow[k];
+        int region = spans.data[span];
+        from = Math.min(from, spans.data[span + 2]);
+        to = Math.max(to, spans.data[span + 3]);
+        for (int m = spans.data[span + 2]; m < spans.data[span + 3]; m++) {
+          rowValues[m] = region - rowValues[m] - 1;
+        }
+      }
+      for (int m = from; m < to; ) {
+        int value = rowValues[m];
+        int runStart = m;
+        while (m < to && rowValues[m] == value) {
+          rowValues[m++] = NO_REGION;
+        }
+        if (value != NO_REGION) {
+          runs.add(value, l, runStart, m);
+        }
+      }
+      runRowOffset[l + 1] = runs.size / 4;
+    }
+    return runs.toRegionRuns(lx, ly, runRowOffset);
+  }
+
+  /**
+   * Updates a grid that was rasterized using the previous rings without any overlapping regions so that it
+   * matches the given rings. Cells that left a region are cleared before any cell is assigned to a region,
+   * so a cell can move from one region to its neighbor within a single update. If the given rings make regions
+   * overlap the update is aborted and the grid needs to be {@link #rasterize(int[][], PackedRings, int, int[]) rasterized}
+   * from scratch.
+   *
+   * @param ringsInRegion The indices of the rings belonging to each region.
+   * @param previousRings The coordinates the grid was rasterized with.
+   * @param rings The new coordinates of the rings in L-space.
+   * @param ly The grid's height.
+   * @param gridIndexToRegionIndex The grid to update, cell (x,y) is at index x*ly+y.
+   * @return True if the grid was updated, false if it was left in an undefined state because of overlapping regions.
+   */
+  public static boolean update(int[][] ringsInRegion, PackedRings previousRings, PackedRings rings,
+                               int ly, int[] gridIndexToRegionIndex) {
+    SpanBuffer addedSpans = new SpanBuffer();
+    for (int region = 0; region < ringsInRegion.length; region++) {
+      int[] regionRings = ringsInRegion[region];
+      int rowStart = Math.min(getFirstRow(regionRings, previousRings), getFirstRow(regionRings, rings));
+      int rowEnd = Math.max(getRowEnd(regionRings, previousRings), getRowEnd(regionRings, rings));
+      if (rowStart >= rowEnd) {
+        continue;
+      }
+      RowCrossings previous = RowCrossings.collect(regionRings, previousRings, rowStart, rowEnd);
+      RowCrossings current = RowCrossings.collect(regionRings, rings, rowStart, rowEnd);
+      for (int row = 0; row < rowEnd - rowStart; row++) {
+        if (!sweepRow(region, rowStart + row, previous, current, row, addedSpans, ly, gridIndexToRegionIndex)) {
+          return false;
+        }
+      }
+    }
+    return addedSpans.fill(ly, gridIndexToRegionIndex);
+  }
+
+  private static boolean sweepRow(int region, int l, RowCrossings previous, RowCrossings current, int row,
+                                  SpanBuffer addedSpans, int ly, int[] gridIndexToRegionIndex) {
+    double[] previousX = previous.crossingX;
+    double[] currentX = current.crossingX;
+    int i = previous.rowOffset[row];
+    int previousEnd = previous.rowOffset[row + 1];
+    int j = current.rowOffset[row];
+    int currentEnd = current.rowOffset[row + 1];
+    boolean insidePrevious = false;
+    boolean insideCurrent = false;
+    int spanStart = 0;
+    while (i < previousEnd || j < currentEnd) {
+      boolean fromPrevious = j >= currentEnd || (i < previousEnd && previousX[i] <= currentX[j]);
+      double crossing = fromPrevious ? previousX[i++] : currentX[j++];
+      // cell m is left of a crossing c iff m < c
+      int cell = (int) Math.ceil(crossing);
+      if (insidePrevious != insideCurrent) {
+        if (insideCurrent) {
+          addedSpans.add(region, l, spanStart, cell);
+        } else {
+          for (int m = spanStart; m < cell; m++) {
+            if (gridIndexToRegionIndex[m * ly + l] != region) {
+              return false;
+            }
+            gridIndexToRegionIndex[m * ly + l] = NO_REGION;
+          }
+        }
+      }
+      if (fromPrevious) {
+        insidePrevious = !insidePrevious;
+      } else {
+        insideCurrent = !insideCurrent;
+      }
+      spanStart = cell;
+    }
+    return true;
+  }
+
+  private static int getFirstRow(int[] regionRings, PackedRings rings) {
+    double[] y = rings.getY();
+    double minY = Double.POSITIVE_INFINITY;
+    for (int ring : regionRings) {
+      for (int k = rings.getRingStart(ring); k < rings.getRingEnd(ring); k++) {
+        minY = Math.min(minY, y[k]);
+      }
+    }
+    return (int) Math.ceil(minY - 0.5);
+  }
+
+  private static int getRowEnd(int[] regionRings, PackedRings rings) {
+    double[] y = rings.getY();
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int ring : regionRings) {
+      for (int k = rings.getRingStart(ring); k < rings.getRingEnd(ring); k++) {
+        maxY = Math.max(maxY, y[k]);
+      }
+    }
+    return (int) Math.ceil(maxY - 0.5);
+  }
+
+  /*
+   * The x positions (shifted by -0.5 so that cell m is left of a crossing c iff m < c) where the edges of
+   * some rings cross the rows rowStart..rowEnd-1, grouped by row and sorted within each row.
+   */
+  private static class RowCrossings {
+    private final int[] rowOffset;
+    private final double[] crossingX;
+
+    private RowCrossings(int[] rowOffset, double[] crossingX) {
+      this.rowOffset = rowOffset;
+      this.crossingX = crossingX;
+    }
+
+    private static RowCrossings collect(int[] regionRings, PackedRings rings, int rowStart, int rowEnd) {
+      double[] ringX = rings.getX();
+      double[] ringY = rings.getY();
+      int[] rowOffset = new int[rowEnd - rowStart + 1];
+      for (int ring : regionRings) {
+        int ringStart = rings.getRingStart(ring);
+        int ringEnd = rings.getRingEnd(ring);
+        for (int k = ringStart, n = ringEnd - 1; k < ringEnd; n = k++) {
+          for (int l = (int) Math.ceil(Math.min(ringY[n], ringY[k]) - 0.5); l < Math.max(ringY[n] - 0.5, ringY[k] - 0.5); l++) {
+            rowOffset[l - rowStart + 1]++;
+          }
+        }
+      }
+      for (int row = 0; row < rowEnd - rowStart; row++) {
+        rowOffset[row + 1] += rowOffset[row];
+      }
+      double[] crossingX = new double[rowOffset[rowEnd - rowStart]];
+      int[] rowFill = Arrays.copyOf(rowOffset, rowEnd - rowStart);
+      for (int ring : regionRings) {
+        int ringStart = rings.getRingStart(ring);
+        int ringEnd = rings.getRingEnd(ring);
+        for (int k = ringStart, n = ringEnd - 1; k < ringEnd; n = k++) {
+          double pkX = ringX[k];
+          double pkY = ringY[k];
+          double pnX = ringX[n];
+          double pnY = ringY[n];
+          for (int l = (int) Math.ceil(Math.min(pnY, pkY) - 0.5); l < Math.max(pnY - 0.5, pkY - 0.5); l++) {
+            crossingX[rowFill[l - rowStart]++] = (pnX - 0.5 - (pkX - 0.5)) * (l - (pkY - 0.5)) /
+              (pnY - 0.5 - (pkY - 0.5)) + (pkX - 0.5);
+          }
+        }
+      }
+      for (int row = 0; row < rowEnd - rowStart; row++) {
+        Arrays.sort(crossingX, rowOffset[row], rowOffset[row + 1]);
+      }
+      return new RowCrossings(rowOffset, crossingX);
+    }
+  }
+
+  /*
+   * Collects spans of cells that are assigned to a region. They are only written after all cells that left
+   * their region were cleared.
+   */
+  private static class SpanBuffer {
+    private int[] data = new int[64];
+    private int size;
+
+    private void add(int region, int l, int from, int to) {
+      if (size + 4 > data.length) {
+        data = Arrays.copyOf(data, data.length * 2);
+      }
+      data[size++] = region;
+      data[size++] = l;
+      data[size++] = from;
+      data[size++] = to;
+    }
+
+    private boolean fill(int ly, int[] gridIndexToRegionIndex) {
+      for (int i = 0; i < size; i += 4) {
+        int region = data[i];
+        int l = data[i + 1];
+        for (int m = data[i + 2]; m < data[i + 3]; m++) {
+          if (gridIndexToRegionIndex[m * ly + l] != NO_REGION) {
+            return false;
+          }
+          gridIndexToRegionIndex[m * ly + l] = region;
+        }
+      }
+      return true;
+    }
+
+    private RegionRuns toRegionRuns(int lx, int ly, int[] rowOffset) {
+      int runCount = size / 4;
+      int[] runStart = new int[runCount];
+      int[] runEnd = new int[runCount];
+      int[] runRegionIndex = new int[runCount];
+      for (int run = 0; run < runCount; run++) {
+        runRegionIndex[run] = data[4 * run];
+        runStart[run] = data[4 * run + 2];
+        runEnd[run] = data[4 * run + 3];
+      }
+      return new RegionRuns(lx, ly, rowOffset, runStart, runEnd, runRegionIndex);
+    }
+  }
+}
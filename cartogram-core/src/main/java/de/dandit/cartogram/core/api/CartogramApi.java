@@ -8,6 +8,11 @@ import java.util.Map;
 import de.dandit.cartogram.core.Cartogram;
 import de.dandit.cartogram.core.Density;
 import de.dandit.cartogram.core.context.CartogramContext;
+import de.dandit.cartogram.core.context.GridField;
+import de.dandit.cartogram.core.context.LayerData;
+import de.dandit.cartogram.core.context.MapGrid;
+import de.dandit.cartogram.core.context.PackedRings;
+import de.dandit.cartogram.core.context.RegionData;
 
 /**
  * Offers an API to calculate cartograms. Note that the input and output are not OGC geometries
@@ -33,50 +38,125 @@ public class CartogramApi {
    * need to be scaled to huge regions or vice versa.
    */
   public CartogramResult calculateGaSeMo(MapFeatureData mapFeatureData, CartogramConfig config) throws ConvergenceGoalFailedException {
-    CartogramContext cartogramContext = Density.initializeContext(mapFeatureData, config);
-    CartogramContext context = new Cartogram(cartogramContext)
-      .calculate(config.getParallelismConfig(), config.isScaleToOriginalPolygonRegion(), config.getMaxPermittedAreaError());
+    MapGridPool pool = config.getMapGridPool();
+    CartogramContext cartogramContext = Density.initializeContext(mapFeatureData, config,
+      pool.asGridSource(config.getFftPlanFactory(), config.getGridStorage()));
+    MapGrid mapGrid = cartogramContext.getMapGrid();
+    try {
+      ProjectionSnapshots snapshots = config.getProjectionSnapshots();
+      CartogramContext context = new Cartogram(cartogramContext, snapshots.getTimes(),
+        createSnapshotConsumer(cartogramContext, config))
+        .calculate(config.getParallelismConfig(), config.isScaleToOriginalPolygonRegion(), config.getMaxPermittedAreaError(),
+          config.isTrackGridProjection());
 
-    double maximumAreaError = Cartogram.calculateMaximumAreaError(
-        context.getRegionData().getTargetArea(),
-        context.getRegionData().getRingsInRegion(),
-        context.getRegionData().getCartogramRingsX(),
-        context.getRegionData().getCartogramRingsY())
-        .getMaximumAreaError();
+      double maximumAreaError = Cartogram.calculateMaximumAreaError(
+          context.getRegionData().getTargetArea(),
+          context.getRegionData().getRingsInRegion(),
+          context.getRegionData().getCartogramRingArea())
+          .getMaximumAreaError();
 
-    int[] regionIds = context.getRegionData().getRegionId();
+      List<ResultRegion> resultRegions = createResultRegions(context.getRegionData(),
+        context.getRegionData().getCartogramRings());
+      return new CartogramResult(
+        maximumAreaError,
+        resultRegions,
+        createResultLayers(context.getLayerData()),
+        createGridProjection(context, config),
+        mapGrid.getLx(),
+        mapGrid.getLy());
+    } finally {
+      // the result only keeps heap arrays, so off-heap grid fields can be freed or reused
+      pool.giveBack(mapGrid);
+    }
+  }
+
+  private static Cartogram.SnapshotConsumer createSnapshotConsumer(CartogramContext context, CartogramConfig config) {
+    ProjectionSnapshots snapshots = config.getProjectionSnapshots();
+    if (!snapshots.isTakingSnapshots()) {
+      return null;
+    }
+    MapGrid mapGrid = context.getMapGrid();
+    return (integration, time, rings) -> {
+      if (config.isScaleToOriginalPolygonRegion()) {
+        // the rings of a snapshot are scratch space, so they can be transformed in place
+        double scalingFactor = mapGrid.getInitialScalingFactor();
+        double offsetX = mapGrid.getInitialDeltaX();
+        double offsetY = mapGrid.getInitialDeltaY();
+        double[] pX = rings.getX();
+        double[] pY = rings.getY();
+        for (int j = 0; j < pX.length; j++) {
+          pX[j] = pX[j] * scalingFactor + offsetX;
+          pY[j] = pY[j] * scalingFactor + offsetY;
+        }
+      }
+      snapshots.getListener().onSnapshot(new ProjectionSnapshot(integration, time, rings, context.getRegionData()));
+    };
+  }
+
+  static List<ResultRegion> createResultRegions(RegionData regionData, PackedRings rings) {
+    int[] regionIds = regionData.getRegionId();
     List<ResultRegion> resultRegions = new ArrayList<>();
-    int[][] ringsInRegion = context.getRegionData().getRingsInRegion();
-    double[][] cartogramRingsX = context.getRegionData().getCartogramRingsX();
-    double[][] cartogramRingsY = context.getRegionData().getCartogramRingsY();
-    int[][] ringsInPolygonByRegion = context.getRegionData().getRingsInPolygonByRegion();
-    boolean[] regionNaN = context.getRegionData().getRegionNaN();
+    int[][] ringsInRegion = regionData.getRingsInRegion();
+    int[][] ringsInPolygonByRegion = regionData.getRingsInPolygonByRegion();
+    boolean[] regionNaN = regionData.getRegionNaN();
     for (int i = 0; i < regionIds.length; i++) {
-      ResultRegion resultRegion = createResultRegion(regionIds[i], ringsInRegion[i], ringsInPolygonByRegion[i], cartogramRingsX, cartogramRingsY,
+      ResultRegion resultRegion = createResultRegion(regionIds[i], ringsInRegion[i], ringsInPolygonByRegion[i], rings,
         regionNaN[i]);
       resultRegions.add(resultRegion);
     }
-    return new CartogramResult(
-      maximumAreaError,
-      resultRegions,
-      cartogramContext.getMapGrid().getGridProjectionX(),
-      cartogramContext.getMapGrid().getGridProjectionY(),
-      cartogramContext.getMapGrid().getLx(),
-      cartogramContext.getMapGrid().getLy());
+    return resultRegions;
+  }
+
+  private static List<GeometryLayer> createResultLayers(LayerData layerData) {
+    PackedRings cartogramParts = layerData.getCartogramParts();
+    List<GeometryLayer> resultLayers = new ArrayList<>(layerData.getLayerCount());
+    for (int layer = 0; layer < layerData.getLayerCount(); layer++) {
+      int partCount = layerData.getLayerPartEnd(layer) - layerData.getLayerPartStart(layer);
+      List<double[]> partsX = new ArrayList<>(partCount);
+      List<double[]> partsY = new ArrayList<>(partCount);
+      for (int part = layerData.getLayerPartStart(layer); part < layerData.getLayerPartEnd(layer); part++) {
+        partsX.add(cartogramParts.copyRingX(part));
+        partsY.add(cartogramParts.copyRingY(part));
+      }
+      resultLayers.add(new GeometryLayer(layerData.getLayerId(layer), partsX, partsY));
+    }
+    return resultLayers;
+  }
+
+  private static GridProjection createGridProjection(CartogramContext context, CartogramConfig config) {
+    if (!config.isTrackGridProjection()) {
+      return null;
+    }
+    MapGrid mapGrid = context.getMapGrid();
+    return new GridProjection(
+      mapGrid.getLx(),
+      mapGrid.getLy(),
+      projectionForResult(mapGrid.getGridProjectionX(), config),
+      projectionForResult(mapGrid.getGridProjectionY(), config),
+      mapGrid.getInitialDeltaX(),
+      mapGrid.getInitialDeltaY(),
+      mapGrid.getInitialScalingFactor(),
+      context.getResultScalingFactor(),
+      config.isScaleToOriginalPolygonRegion());
+  }
+
+  private static double[] projectionForResult(GridField projection, CartogramConfig config) {
+    double[] values = projection.asArray();
+    // heap arrays of a retained grid will be overwritten by the next calculation, off-heap fields are copied anyway
+    return config.getMapGridPool().isRetainingGrids() && !config.getGridStorage().isOffHeap() ? values.clone() : values;
   }
 
-  private ResultRegion createResultRegion(int regionId, int[] ringsInRegion,
+  private static ResultRegion createResultRegion(int regionId, int[] ringsInRegion,
                                           int[] ringsInPolygon,
-                                          double[][] cartogramRingsX,
-                                          double[][] cartogramRingsY,
+                                          PackedRings cartogramRings,
                                           boolean regionNaN) {
     Map<Integer, double[]> ringsX = new HashMap<>();
     Map<Integer, double[]> ringsY = new HashMap<>();
     Map<Integer, List<double[]>> holesX = new HashMap<>();
     Map<Integer, List<double[]>> holesY = new HashMap<>();
     for (int j = 0; j < ringsInRegion.length; j++) {
-      double[] currentRingX = cartogramRingsX[ringsInRegion[j]];
-      double[] currentRingY = cartogramRingsY[ringsInRegion[j]];
+      double[] currentRingX = cartogramRings.copyRingX(ringsInRegion[j]);
+      double[] currentRingY = cartogramRings.copyRingY(ringsInRegion[j]);
       if (ringsInPolygon[j] < 0) {
         int index = -(ringsInPolygon[j] + 1);
         ringsX.put(index, currentRingX);
@@ -44,13 +44,80 @@ public class CartogramConfig {
    */
   private final double maxPermittedAreaError;
 
+  /**
+   * Defines where the grid fields of the integration and projection are stored. Defaults to the heap.
+   */
+  private final GridStorage gridStorage;
+
+  /**
+   * Allows reusing grids and FFT plans of earlier calculations that had the same grid size.
+   * Defaults to a pool that retains nothing.
+   */
+  private final MapGridPool mapGridPool;
+
+  /**
+   * If true the projection of the grid is tracked over all iterations and part of the result, e.g. to plot the
+   * graticule. This costs an interpolation of every grid point per iteration and two grid sized arrays in the result,
+   * callers that only need the regions can turn it off. Defaults to true.
+   */
+  private final boolean trackGridProjection;
+
+  /**
+   * Requests snapshots of the regions during the integrations, e.g. to animate the morph. Defaults to none.
+   */
+  private final ProjectionSnapshots projectionSnapshots;
+
   public CartogramConfig(double maxPermittedAreaError, boolean usePerimeterThreshold, Logging logging, FftPlanFactory fftPlanFactory, boolean scaleToOriginalPolygonRegion, ParallelismConfig parallelismConfig) {
+    this(maxPermittedAreaError, usePerimeterThreshold, logging, fftPlanFactory, scaleToOriginalPolygonRegion, parallelismConfig,
+      GridStorage.ofHeap(), MapGridPool.ofNone(), true, ProjectionSnapshots.ofNone());
+  }
+
+  private CartogramConfig(double maxPermittedAreaError, boolean usePerimeterThreshold, Logging logging, FftPlanFactory fftPlanFactory, boolean scaleToOriginalPolygonRegion, ParallelismConfig parallelismConfig,
+                          GridStorage gridStorage, MapGridPool mapGridPool, boolean trackGridProjection,
+                          ProjectionSnapshots projectionSnapshots) {
     this.maxPermittedAreaError = maxPermittedAreaError;
     this.usePerimeterThreshold = usePerimeterThreshold;
     this.logging = logging;
     this.fftPlanFactory = fftPlanFactory;
     this.scaleToOriginalPolygonRegion = scaleToOriginalPolygonRegion;
     this.parallelismConfig = parallelismConfig;
+    this.gridStorage = gridStorage;
+    this.mapGridPool = mapGridPool;
+    this.trackGridProjection = trackGridProjection;
+    this.projectionSnapshots = projectionSnapshots;
+  }
+
+  /**
+   * @return A copy of this configuration using the given grid storage.
+   */
+  public CartogramConfig withGridStorage(GridStorage gridStorage) {
+    return new CartogramConfig(maxPermittedAreaError, usePerimeterThreshold, logging, fftPlanFactory, scaleToOriginalPolygonRegion, parallelismConfig,
+      gridStorage, mapGridPool, trackGridProjection, projectionSnapshots);
+  }
+
+  /**
+   * @return A copy of this configuration using the given pool. To profit from the pool it must be shared
+   * by the configurations of the calculations.
+   */
+  public CartogramConfig withMapGridPool(MapGridPool mapGridPool) {
+    return new CartogramConfig(maxPermittedAreaError, usePerimeterThreshold, logging, fftPlanFactory, scaleToOriginalPolygonRegion, parallelismConfig,
+      gridStorage, mapGridPool, trackGridProjection, projectionSnapshots);
+  }
+
+  /**
+   * @return A copy of this configuration that tracks the grid projection or not.
+   */
+  public CartogramConfig withGridProjectionTracking(boolean trackGridProjection) {
+    return new CartogramConfig(maxPermittedAreaError, usePerimeterThreshold, logging, fftPlanFactory, scaleToOriginalPolygonRegion, parallelismConfig,
+      gridStorage, mapGridPool, trackGridProjection, projectionSnapshots);
+  }
+
+  /**
+   * @return A copy of this configuration that takes the given snapshots.
+   */
+  public CartogramConfig withProjectionSnapshots(ProjectionSnapshots projectionSnapshots) {
+    return new CartogramConfig(maxPermittedAreaError, usePerimeterThreshold, logging, fftPlanFactory, scaleToOriginalPolygonRegion, parallelismConfig,
+      gridStorage, mapGridPool, trackGridProjection, projectionSnapshots);
   }
 
   public boolean isUsePerimeterThreshold() {
@@ -76,4 +143,20 @@ public class CartogramConfig {
   public ParallelismConfig getParallelismConfig() {
     return parallelismConfig;
   }
+
+  public GridStorage getGridStorage() {
+    return gridStorage;
+  }
+
+  public MapGridPool getMapGridPool() {
+    return mapGridPool;
+  }
+
+  public boolean isTrackGridProjection() {
+    return trackGridProjection;
+  }
+
+  public ProjectionSnapshots getProjectionSnapshots() {
+    return projectionSnapshots;
+  }
 }
@@ -5,16 +5,21 @@ import java.util.List;
 public class CartogramResult {
   private final double maximumAreaError;
   private final List<ResultRegion> resultRegions;
-  private final double[] gridProjectionX;
-  private final double[] gridProjectionY;
+  private final List<GeometryLayer> resultLayers;
+  private final GridProjection gridProjection;
   private final int gridSizeX;
   private final int gridSizeY;
 
-  public CartogramResult(double maximumAreaError, List<ResultRegion> resultRegions, double[] gridProjectionX, double[] gridProjectionY, int gridSizeX, int gridSizeY) {
+  public CartogramResult(double maximumAreaError, List<ResultRegion> resultRegions, GridProjection gridProjection, int gridSizeX, int gridSizeY) {
+    this(maximumAreaError, resultRegions, List.of(), gridProjection, gridSizeX, gridSizeY);
+  }
+
+  public CartogramResult(double maximumAreaError, List<ResultRegion> resultRegions, List<GeometryLayer> resultLayers,
+                         GridProjection gridProjection, int gridSizeX, int gridSizeY) {
     this.maximumAreaError = maximumAreaError;
     this.resultRegions = resultRegions;
-    this.gridProjectionX = gridProjectionX;
-    this.gridProjectionY = gridProjectionY;
+    this.resultLayers = resultLayers;
+    this.gridProjection = gridProjection;
     this.gridSizeX = gridSizeX;
     this.gridSizeY = gridSizeY;
   }
@@ -23,12 +28,47 @@ public class CartogramResult {
     return resultRegions;
   }
 
+  /**
+   * @return The layers of the input projected like the regions, in the same order and with the same ids.
+   */
+  public List<GeometryLayer> getResultLayers() {
+    return resultLayers;
+  }
+
+  /**
+   * @return An index to find the result region at a point, see {@link RegionIndex}.
+   */
+  public RegionIndex createRegionIndex(ParallelismConfig parallelismConfig) {
+    return RegionIndex.create(resultRegions, parallelismConfig);
+  }
+
+  /**
+   * @return True if the grid projection was tracked, see {@link CartogramConfig#isTrackGridProjection()}.
+   */
+  public boolean hasGridProjection() {
+    return gridProjection != null;
+  }
+
+  /**
+   * @return The projection that allows projecting further points of the input map onto the cartogram.
+   * Null if the grid projection was not tracked.
+   */
+  public GridProjection getGridProjection() {
+    return gridProjection;
+  }
+
+  /**
+   * @return Where each grid point of the initial grid got projected to, x-major. Null if the grid projection was not tracked.
+   */
   public double[] getGridProjectionX() {
-    return gridProjectionX;
+    return gridProjection == null ? null : gridProjection.getProjectionX();
   }
 
+  /**
+   * @return Where each grid point of the initial grid got projected to, x-major. Null if the grid projection was not tracked.
+   */
   public double[] getGridProjectionY() {
-    return gridProjectionY;
+    return gridProjection == null ? null : gridProjection.getProjectionY();
   }
 
   public int getGridSizeX() {
@@ -1,14 +1,30 @@
 package de.dandit.cartogram.core.api;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import de.dandit.cartogram.core.dft.BatchedFftPlanner;
 import de.dandit.cartogram.core.dft.DefaultFftPlanner;
 import de.dandit.cartogram.core.dft.FftPlan2D;
+import de.dandit.cartogram.core.dft.FftTransform2D;
+import de.dandit.cartogram.core.dft.MeasuringFftPlanner;
+import de.dandit.cartogram.core.dft.Radix4FftPlanner;
 
+/**
+ * Validates a planner and creates plans with it. The transforms of the plans, which hold the tables and buffers, are
+ * cached by type and size and shared by all later plans of that type and size. A factory can be shared by
+ * concurrent calculations, the factories of the built-in planners are shared per parallelism.
+ */
 public class FftPlanFactory {
+  private static final Map<String, FftPlanFactory> SHARED_FACTORIES = new ConcurrentHashMap<>();
+
   private final Fft2DPlanner planner;
+  private final Map<String, FftTransform2D> transforms = new ConcurrentHashMap<>();
 
   private FftPlanFactory(Fft2DPlanner planner) {
     this.planner = planner;
@@ -161,7 +177,8 @@ public class FftPlanFactory {
       return false;
     }
     for (int i = 0; i < expected.length; i++) {
-      if (Math.abs(expected[i] - given[i]) > 1E-15) {
+      // a few ulps, relative to the magnitude, as different algorithms round differently
+      if (Math.abs(expected[i] - given[i]) > 1E-14 * Math.max(1., Math.abs(expected[i]))) {
         return false;
       }
     }
@@ -173,12 +190,82 @@ public class FftPlanFactory {
   }
 
   public static FftPlanFactory ofDefault(ParallelismConfig parallelismConfig) {
-    return new FftPlanFactory(new DefaultFftPlanner(parallelismConfig));
+    return SHARED_FACTORIES.computeIfAbsent(sharedKey("default", parallelismConfig),
+      key -> new FftPlanFactory(new DefaultFftPlanner(parallelismConfig)));
+  }
+
+  /**
+   * @return A factory whose plans use a radix-4 FFT, which is faster than the radix-2 FFT of the default planner
+   * but rounds differently.
+   */
+  public static FftPlanFactory ofRadix4(ParallelismConfig parallelismConfig) {
+    return SHARED_FACTORIES.computeIfAbsent(sharedKey("radix4", parallelismConfig),
+      key -> new FftPlanFactory(new Radix4FftPlanner(parallelismConfig)));
+  }
+
+  /**
+   * @return A factory whose plans give the same results as the plans of {@link #ofRadix4(ParallelismConfig)}, but
+   * transform several rows respectively columns at once, which keeps more independent operations in flight.
+   */
+  public static FftPlanFactory ofBatched(ParallelismConfig parallelismConfig) {
+    return SHARED_FACTORIES.computeIfAbsent(sharedKey("batched", parallelismConfig),
+      key -> new FftPlanFactory(new BatchedFftPlanner(parallelismConfig)));
+  }
+
+  /**
+   * @return A factory that measures which of the built-in planners is the fastest for every type and size of
+   * transform the first time it is planned, see {@link #saveWisdom(Path)} to keep the choices. The factory is not
+   * shared, as loading wisdom into it should not affect other calculations.
+   */
+  public static FftPlanFactory ofMeasuring(ParallelismConfig parallelismConfig) {
+    return new FftPlanFactory(new MeasuringFftPlanner(parallelismConfig));
+  }
+
+  /**
+   * @return True if this factory was created by {@link #ofMeasuring(ParallelismConfig)}, so it has wisdom to save
+   * and load.
+   */
+  public boolean isMeasuring() {
+    return planner instanceof MeasuringFftPlanner;
+  }
+
+  /**
+   * Writes the planner choices this measuring factory made so far to the given file, replacing it if it exists.
+   * Loading the file in a later process on the same kind of machine skips the measurements.
+   */
+  public void saveWisdom(Path path) throws IOException {
+    getMeasuringPlanner().saveWisdom(path);
+  }
+
+  /**
+   * Loads the planner choices saved by {@link #saveWisdom(Path)}. Transforms this factory already cached keep
+   * their planner, so wisdom should be loaded before the first plan is created.
+   */
+  public void loadWisdom(Path path) throws IOException {
+    getMeasuringPlanner().loadWisdom(path);
+  }
+
+  private MeasuringFftPlanner getMeasuringPlanner() {
+    if (!isMeasuring()) {
+      throw new IllegalStateException("Only a measuring factory has wisdom, see ofMeasuring.");
+    }
+    return (MeasuringFftPlanner) planner;
+  }
+
+  private static String sharedKey(String planner, ParallelismConfig parallelismConfig) {
+    return planner + (parallelismConfig.isRunInParallel() ? " parallel" : " single-threaded");
+  }
+
+  /**
+   * @return The amount of distinct transforms cached so far.
+   */
+  public int getCachedTransformCount() {
+    return transforms.size();
   }
 
   public FftPlan2D createDCT2_2D(int width, int height, double[] inputData, double[] outputData) {
     validateIOLength(inputData, outputData, width, height);
-    return planner.createDCT2_2D(width, height, inputData, outputData);
+    return create("DCT2", width, height, inputData, outputData, planner::createDCT2_2D);
   }
 
   /* Corresponds to FFTW's REDFT01:
@@ -186,7 +273,7 @@ public class FftPlanFactory {
    */
   public FftPlan2D createDCT3_2D(int width, int height) {
     double[] data = new double[width * height];
-    return planner.createDCT3_2D(width, height, data, data);
+    return create("DCT3", width, height, data, data, planner::createDCT3_2D);
   }
 
   /* Corresponds to FFTW's REDFT01:
@@ -194,21 +281,38 @@ public class FftPlanFactory {
    */
   public FftPlan2D createDCT3_2D(int width, int height, double[] inputData, double[] outputData) {
     validateIOLength(inputData, outputData, width, height);
-    return planner.createDCT3_2D(width, height, inputData, outputData);
+    return create("DCT3", width, height, inputData, outputData, planner::createDCT3_2D);
   }
 
   /* Corresponds to FFTW's RODFT01 -> REDFT01:
    */
   public FftPlan2D createDCT3_DST3_2D(int width, int height) {
     double[] data = new double[width * height];
-    return planner.createDCT3_DST3_2D(width, height, data, data);
+    return create("DCT3_DST3", width, height, data, data, planner::createDCT3_DST3_2D);
   }
 
   /* Corresponds to FFTW's REDFT01 -> RODFT01:
    */
   public FftPlan2D createDST3_DCT3_2D(int width, int height) {
     double[] data = new double[width * height];
-    return planner.createDST3_DCT3_2D(width, height, data, data);
+    return create("DST3_DCT3", width, height, data, data, planner::createDST3_DCT3_2D);
+  }
+
+  private FftPlan2D create(String type, int width, int height, double[] inputData, double[] outputData,
+                           PlanCreation planCreation) {
+    String key = type + " " + width + " " + height;
+    FftTransform2D transform = transforms.get(key);
+    if (transform != null) {
+      return transform.bind(inputData, outputData);
+    }
+    // planned outside of the map, so concurrent planning of other types and sizes is not blocked
+    FftPlan2D plan = planCreation.create(width, height, inputData, outputData);
+    FftTransform2D previous = transforms.putIfAbsent(key, plan.getTransform());
+    return previous == null ? plan : previous.bind(inputData, outputData);
+  }
+
+  private interface PlanCreation {
+    FftPlan2D create(int width, int height, double[] inputData, double[] outputData);
   }
 
   private void validateIOLength(double[] inputData, double[] outputData, int width, int height) {
@@ -0,0 +1,48 @@
+package de.dandit.cartogram.core.api;
+
+import java.util.List;
+
+/**
+ * Describes further geometries of the map like roads, rivers or points of interest that have no target value but
+ * should be deformed along with the regions. A layer consists of parts, each part is a sequence of coordinates:
+ * A single point, a line string or a ring. The parts are projected point by point, so the result keeps the
+ * structure of the parts but segments are not bent to follow the deformation in between their points.
+ * The coordinates should lie within the bounding box of the map.
+ */
+public class GeometryLayer {
+  private final int layerId;
+  private final List<double[]> partsX;
+  private final List<double[]> partsY;
+
+  /**
+   * @param layerId The layer's id that identifies the projected layer.
+   * @param partsX The x coordinates of each part.
+   * @param partsY The y coordinates of each part, as many as x coordinates.
+   */
+  public GeometryLayer(int layerId, List<double[]> partsX, List<double[]> partsY) {
+    if (partsX.size() != partsY.size()) {
+      throw new IllegalArgumentException("Parts do not match: " + partsX.size() + ", " + partsY.size());
+    }
+    for (int i = 0; i < partsX.size(); i++) {
+      if (partsX.get(i).length != partsY.get(i).length) {
+        throw new IllegalArgumentException("Coordinates of part " + i + " do not match: "
+          + partsX.get(i).length + ", " + partsY.get(i).length);
+      }
+    }
+    this.layerId = layerId;
+    this.partsX = partsX;
+    this.partsY = partsY;
+  }
+
+  public int getLayerId() {
+    return layerId;
+  }
+
+  public List<double[]> getPartsX() {
+    return partsX;
+  }
+
+  public List<double[]> getPartsY() {
+    return partsY;
+  }
+}
@@ -0,0 +1,234 @@
+package de.dandit.cartogram.core.api;
+
+import java.util.stream.IntStream;
+
+/**
+ * The projection of a finished cartogram: Where each point of the grid got moved to, together with the
+ * transformations between the coordinates of the input map and the grid (L-space). Allows projecting arbitrary
+ * points of the input map onto the cartogram, e.g. to place point features consistently with the result regions.
+ * Points are projected by interpolating the displacement of the surrounding grid points, so the projection is only
+ * as detailed as the grid.
+ */
+public class GridProjection {
+  private final int lx;
+  private final int ly;
+  private final ProjectionField field;
+  private final double initialDeltaX;
+  private final double initialDeltaY;
+  private final double initialScalingFactor;
+  private final double resultScalingFactor;
+  private final boolean scaleToOriginalPolygonRegion;
+
+  /**
+   * @param lx The width of the grid.
+   * @param ly The height of the grid.
+   * @param projectionX The x coordinate in L-space that the grid point (i+0.5,j+0.5) got projected to at index i*ly+j.
+   * @param projectionY The y coordinate in L-space that the grid point (i+0.5,j+0.5) got projected to at index i*ly+j.
+   * @param initialDeltaX The x coordinate of the input map that is the origin of L-space.
+   * @param initialDeltaY The y coordinate of the input map that is the origin of L-space.
+   * @param initialScalingFactor The size of a grid cell in coordinates of the input map.
+   * @param resultScalingFactor The factor that the projected points got scaled with around the center of the grid to
+   *                            keep the total area of the map.
+   * @param scaleToOriginalPolygonRegion If true projected points are transformed back to coordinates of the input map,
+   *                                     else they stay in L-space like the result regions.
+   */
+  public GridProjection(int lx, int ly, double[] projectionX, double[] projectionY,
+                        double initialDeltaX, double initialDeltaY, double initialScalingFactor,
+                        double resultScalingFactor, boolean scaleToOriginalPolygonRegion) {
+    this(lx, ly, new ArrayProjectionField(projectionX, projectionY),
+      initialDeltaX, initialDeltaY, initialScalingFactor, resultScalingFactor, scaleToOriginalPolygonRegion);
+    if (projectionX.length != lx * ly || projectionY.length != lx * ly) {
+      throw new IllegalArgumentException("Projection does not match the grid size " + lx + "x" + ly);
+    }
+  }
+
+  GridProjection(int lx, int ly, ProjectionField field,
+                 double initialDeltaX, double initialDeltaY, double initialScalingFactor,
+                 double resultScalingFactor, boolean scaleToOriginalPolygonRegion) {
+    this.lx = lx;
+    this.ly = ly;
+    this.field = field;
+    this.initialDeltaX = initialDeltaX;
+    this.initialDeltaY = initialDeltaY;
+    this.initialScalingFactor = initialScalingFactor;
+    this.resultScalingFactor = resultScalingFactor;
+    this.scaleToOriginalPolygonRegion = scaleToOriginalPolygonRegion;
+  }
+
+  /**
+   * Projects the given points of the input map onto the cartogram. Output arrays may be the input arrays.
+   * No objects are allocated per point.
+   *
+   * @param xs The x coordinates of the points in coordinates of the input map.
+   * @param ys The y coordinates of the points in coordinates of the input map.
+   * @param outX Receives the projected x coordinates, at least as long as the input.
+   * @param outY Receives the projected y coordinates, at least as long as the input.
+   * @param parallelismConfig Defines if the points are projected in parallel.
+   */
+  public void project(double[] xs, double[] ys, double[] outX, double[] outY, ParallelismConfig parallelismConfig) {
+    if (xs.length != ys.length || outX.length < xs.length || outY.length < xs.length) {
+      throw new IllegalArgumentException("Coordinate arrays do not match: " + xs.length + ", " + ys.length
+        + ", " + outX.length + ", " + outY.length);
+    }
+    parallelismConfig.apply(IntStream.range(0, xs.length))
+      .forEach(k -> project(xs[k], ys[k], outX, outY, k));
+  }
+
+  /**
+   * Builds an index to map points of the cartogram back to the input map. Building takes about as long as
+   * projecting every grid point, so the inverse should be kept for repeated queries.
+   */
+  public InverseGridProjection createInverse() {
+    return new InverseGridProjection(this);
+  }
+
+  private void project(double x, double y, double[] outX, double[] outY, int outIndex) {
+    double pointX = (x - initialDeltaX) / initialScalingFactor;
+    double pointY = (y - initialDeltaY) / initialScalingFactor;
+
+    // bilinear interpolation of the displacement, clamped to the grid like the interpolation of the integration
+    final double xRounded = (long) (pointX + 0.5) - 0.5;
+    final double yRounded = (long) (pointY + 0.5) - 0.5;
+    final double x0 = 0. >= xRounded ? 0. : xRounded;
+    final double x1 = lx <= xRounded + 1. ? lx : xRounded + 1.;
+    final double y0 = 0. >= yRounded ? 0. : yRounded;
+    final double y1 = ly <= yRounded + 1. ? ly : yRounded + 1.;
+    final double deltaX = pointX - x0;
+    final double deltaY = pointY - y0;
+    final int x0I = xRounded >= lx ? (lx - 1) : (int) x0;
+    final int x1I = xRounded + 0.5 >= lx ? (lx - 1) : (int) x1;
+    final int y0I = yRounded >= ly ? (ly - 1) : (int) y0;
+    final int y1I = yRounded + 0.5 >= ly ? (ly - 1) : (int) y1;
+
+    final double scale00 = (1. - deltaX) * (1. - deltaY);
+    final double scale01 = (1. - deltaX) * deltaY;
+    final double scale10 = deltaX * (1. - deltaY);
+    final double scale11 = deltaX * deltaY;
+    final int x0Offset = x0I * ly;
+    final int x1Offset = x1I * ly;
+    double displacementX = scale00 * (field.getX(x0Offset + y0I) - x0I - 0.5)
+      + scale01 * (field.getX(x0Offset + y1I) - x0I - 0.5)
+      + scale10 * (field.getX(x1Offset + y0I) - x1I - 0.5)
+      + scale11 * (field.getX(x1Offset + y1I) - x1I - 0.5);
+    double displacementY = scale00 * (field.getY(x0Offset + y0I) - y0I - 0.5)
+      + scale01 * (field.getY(x0Offset + y1I) - y1I - 0.5)
+      + scale10 * (field.getY(x1Offset + y0I) - y0I - 0.5)
+      + scale11 * (field.getY(x1Offset + y1I) - y1I - 0.5);
+
+    double projectedX = resultScalingFactor * (pointX + displacementX - 0.5 * lx) + 0.5 * lx;
+    double projectedY = resultScalingFactor * (pointY + displacementY - 0.5 * ly) + 0.5 * ly;
+    if (scaleToOriginalPolygonRegion) {
+      projectedX = projectedX * initialScalingFactor + initialDeltaX;
+      projectedY = projectedY * initialScalingFactor + initialDeltaY;
+    }
+    outX[outIndex] = projectedX;
+    outY[outIndex] = projectedY;
+  }
+
+  public int getGridSizeX() {
+    return lx;
+  }
+
+  public int getGridSizeY() {
+    return ly;
+  }
+
+  /**
+   * @return The projected x coordinate of every grid point in L-space, x-major. If the projection is read from a
+   * {@link GridProjectionFile} this is a copy.
+   */
+  public double[] getProjectionX() {
+    return field.getAllX(lx * ly);
+  }
+
+  /**
+   * @return The projected y coordinate of every grid point in L-space, x-major. If the projection is read from a
+   * {@link GridProjectionFile} this is a copy.
+   */
+  public double[] getProjectionY() {
+    return field.getAllY(lx * ly);
+  }
+
+  double getProjectedX(int gridIndex) {
+    return field.getX(gridIndex);
+  }
+
+  double getProjectedY(int gridIndex) {
+    return field.getY(gridIndex);
+  }
+
+  public double getInitialDeltaX() {
+    return initialDeltaX;
+  }
+
+  public double getInitialDeltaY() {
+    return initialDeltaY;
+  }
+
+  public double getInitialScalingFactor() {
+    return initialScalingFactor;
+  }
+
+  public double getResultScalingFactor() {
+    return resultScalingFactor;
+  }
+
+  public boolean isScaleToOriginalPolygonRegion() {
+    return scaleToOriginalPolygonRegion;
+  }
+
+  /**
+   * The projected coordinates of the grid points, wherever they are stored.
+   */
+  interface ProjectionField {
+    double getX(int gridIndex);
+
+    double getY(int gridIndex);
+
+    default double[] getAllX(int size) {
+      double[] values = new double[size];
+      for (int i = 0; i < size; i++) {
+        values[i] = getX(i);
+      }
+      return values;
+    }
+
+    default double[] getAllY(int size) {
+      double[] values = new double[size];
+      for (int i = 0; i < size; i++) {
+        values[i] = getY(i);
+      }
+      return values;
+    }
+  }
+
+  private static class ArrayProjectionField implements ProjectionField {
+    private final double[] projectionX;
+    private final double[] projectionY;
+
+    private ArrayProjectionField(double[] projectionX, double[] projectionY) {
+      this.projectionX = projectionX;
+      this.projectionY = projectionY;
+    }
+
+    @Override
+    public double getX(int gridIndex) {
+      return projectionX[gridIndex];
+    }
+
+    @Override
+    public double getY(int gridIndex) {
+      return projectionY[gridIndex];
+    }
+
+    @Override
+    public double[] getAllX(int size) {
+      return projectionX;
+    }
+
+    @Override
+    public double[] getAllY(int size) {
+      return projectionY;
+    }
+  }
+}
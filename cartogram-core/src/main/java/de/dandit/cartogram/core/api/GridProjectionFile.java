@@ -0,0 +1,196 @@
+package de.dandit.cartogram.core.api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores a {@link GridProjection} in a compact binary file that can be memory-mapped, so a projection can be
+ * calculated once and shared by several processes without recalculating or even copying it.
+ * The file consists of a header with the grid size and the transformations of the projection, followed by the
+ * displacement of every grid point: First all x displacements, then all y displacements, x-major like the grid.
+ * All values are little endian. Displacements are small compared to the coordinates, so storing them as 32 bit
+ * floats keeps the projection accurate to a tiny fraction of a grid cell while halving the file size.
+ */
+public class GridProjectionFile {
+  private static final int MAGIC = 0x46504743; // "CGPF" in little endian
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 56;
+  private static final int FLAG_SCALE_TO_ORIGINAL_POLYGON_REGION = 1;
+  private static final int WRITE_CHUNK_VALUES = 1 << 16;
+
+  public enum Encoding {
+    FLOAT64(Double.BYTES),
+    FLOAT32(Float.BYTES);
+
+    private final int bytesPerValue;
+
+    Encoding(int bytesPerValue) {
+      this.bytesPerValue = bytesPerValue;
+    }
+  }
+
+  private GridProjectionFile() {
+  }
+
+  /**
+   * Writes the projection to the given file, replacing it if it exists.
+   */
+  public static void write(GridProjection projection, Encoding encoding, Path path) throws IOException {
+    int lx = projection.getGridSizeX();
+    int ly = projection.getGridSizeY();
+    checkMappable(lx, ly, encoding);
+    try (FileChannel channel = FileChannel.open(path,
+      StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC)
+        .putInt(VERSION)
+        .putInt(encoding.ordinal())
+        .putInt(lx)
+        .putInt(ly)
+        .putInt(projection.isScaleToOriginalPolygonRegion() ? FLAG_SCALE_TO_ORIGINAL_POLYGON_REGION : 0)
+        .putDouble(projection.getInitialDeltaX())
+        .putDouble(projection.getInitialDeltaY())
+        .putDouble(projection.getInitialScalingFactor())
+        .putDouble(projection.getResultScalingFactor());
+      header.flip();
+      writeFully(channel, header);
+
+      ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK_VALUES * encoding.bytesPerValue).order(ByteOrder.LITTLE_ENDIAN);
+      for (int coordinate = 0; coordinate < 2; coordinate++) {
+        for (int i = 0; i < lx; i++) {
+          for (int j = 0; j < ly; j++) {
+            int index = i * ly + j;
+            double displacement = coordinate == 0
+              ? projection.getProjectedX(index) - i - 0.5
+              : projection.getProjectedY(index) - j - 0.5;
+            if (encoding == Encoding.FLOAT64) {
+              chunk.putDouble(displacement);
+            } else {
+              chunk.putFloat((float) displacement);
+            }
+            if (!chunk.hasRemaining()) {
+              chunk.flip();
+              writeFully(channel, chunk);
+              chunk.clear();
+            }
+          }
+        }
+      }
+      chunk.flip();
+      writeFully(channel, chunk);
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Maps the given file into memory. Only the header is read, the displacements are read from the mapping when
+   * points are projected. The mapping stays valid after the file is closed, so the returned projection can be used
+   * as long as needed.
+   *
+   * @throws IOException If the file could not be read or is no valid projection file.
+   */
+  public static GridProjection map(Path path) throws IOException {
+    MappedByteBuffer mapped;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException("Not a grid projection file: " + path);
+      }
+      mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), Integer.MAX_VALUE));
+    }
+    ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a grid projection file: " + path);
+    }
+    int version = buffer.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("Unsupported grid projection file version " + version + ": " + path);
+    }
+    int encodingOrdinal = buffer.getInt(8);
+    if (encodingOrdinal < 0 || encodingOrdinal >= Encoding.values().length) {
+      throw new IOException("Unknown encoding " + encodingOrdinal + ": " + path);
+    }
+    Encoding encoding = Encoding.values()[encodingOrdinal];
+    int lx = buffer.getInt(12);
+    int ly = buffer.getInt(16);
+    if (lx <= 0 || ly <= 0 || (long) HEADER_BYTES + 2L * lx * ly * encoding.bytesPerValue != buffer.capacity()) {
+      throw new IOException("Grid projection file is truncated or corrupted: " + path);
+    }
+    int flags = buffer.getInt(20);
+
+    buffer.position(HEADER_BYTES);
+    ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    GridProjection.ProjectionField field = encoding == Encoding.FLOAT64
+      ? new MappedFloat64Field(ly, data.asDoubleBuffer())
+      : new MappedFloat32Field(ly, data.asFloatBuffer());
+    return new GridProjection(lx, ly, field,
+      buffer.getDouble(24),
+      buffer.getDouble(32),
+      buffer.getDouble(40),
+      buffer.getDouble(48),
+      (flags & FLAG_SCALE_TO_ORIGINAL_POLYGON_REGION) != 0);
+  }
+
+  private static void checkMappable(int lx, int ly, Encoding encoding) {
+    if ((long) HEADER_BYTES + 2L * lx * ly * encoding.bytesPerValue > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Grid of " + lx + "x" + ly + " is too large for a single mapping, use "
+        + Encoding.FLOAT32 + " or a smaller grid");
+    }
+  }
+
+  // stores x displacements followed by y displacements, absolute reads only so they can be shared by threads
+  private static class MappedFloat64Field implements GridProjection.ProjectionField {
+    private final int ly;
+    private final int size;
+    private final DoubleBuffer displacement;
+
+    private MappedFloat64Field(int ly, DoubleBuffer displacement) {
+      this.ly = ly;
+      this.size = displacement.capacity() / 2;
+      this.displacement = displacement;
+    }
+
+    @Override
+    public double getX(int gridIndex) {
+      return displacement.get(gridIndex) + gridIndex / ly + 0.5;
+    }
+
+    @Override
+    public double getY(int gridIndex) {
+      return displacement.get(size + gridIndex) + gridIndex % ly + 0.5;
+    }
+  }
+
+  private static class MappedFloat32Field implements GridProjection.ProjectionField {
+    private final int ly;
+    private final int size;
+    private final FloatBuffer displacement;
+
+    private MappedFloat32Field(int ly, FloatBuffer displacement) {
+      this.ly = ly;
+      this.size = displacement.capacity() / 2;
+      this.displacement = displacement;
+    }
+
+    @Override
+    public double getX(int gridIndex) {
+      return displacement.get(gridIndex) + gridIndex / ly + 0.5;
+    }
+
+    @Override
+    public double getY(int gridIndex) {
+      return displacement.get(size + gridIndex) + gridIndex % ly + 0.5;
+    }
+  }
+}
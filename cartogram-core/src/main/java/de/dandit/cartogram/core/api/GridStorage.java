@@ -0,0 +1,30 @@
+package de.dandit.cartogram.core.api;
+
+/**
+ * Defines where the grid fields of the integration and projection are stored. Off-heap storage allows
+ * high resolution grids without a huge heap, the memory is freed when the calculation finishes. The fields
+ * that are transformed by a {@link FftPlanFactory FFT plan} always stay on the heap.
+ * Freeing off-heap memory explicitly needs sun.misc.Unsafe of the jdk.unsupported module, which this module
+ * requires. If it is not available anyway, for example in a runtime image built without it, the memory is only
+ * freed once the garbage collector collects the fields, which can take long as they hardly use any heap space.
+ */
+public class GridStorage {
+
+  private final boolean offHeap;
+
+  private GridStorage(boolean offHeap) {
+    this.offHeap = offHeap;
+  }
+
+  public static GridStorage ofHeap() {
+    return new GridStorage(false);
+  }
+
+  public static GridStorage ofOffHeap() {
+    return new GridStorage(true);
+  }
+
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+}
@@ -0,0 +1,253 @@
+package de.dandit.cartogram.core.api;
+
+import java.util.stream.IntStream;
+
+/**
+ * Inverts a {@link GridProjection}: Maps points of the cartogram back to the coordinates of the input map,
+ * e.g. to find out what location of the original map is shown at some point of a rendered cartogram.
+ * The projection moves the grid points and interpolates bilinearly in between, so every grid cell is
+ * deformed into a quadrilateral that is inverted by solving the bilinear interpolation. The deformed cells are
+ * indexed by a regular grid of buckets over their bounding boxes, so a query only tests a few cells.
+ * Immutable and safe to query from multiple threads once created.
+ */
+public class InverseGridProjection {
+  private static final double EPSILON = 1e-9;
+
+  private final GridProjection projection;
+  // the lattice of the piecewise bilinear projection: the grid points plus the grid's border, as the projection
+  // keeps the displacement constant between the outermost grid points and the border
+  private final int latticeSizeX;
+  private final int latticeSizeY;
+  private final double[] latticeX;
+  private final double[] latticeY;
+
+  private final double bucketMinX;
+  private final double bucketMinY;
+  private final double bucketSize;
+  private final int bucketCountX;
+  private final int bucketCountY;
+  // the cells overlapping bucket b are at bucketCells[bucketOffset[b]] until (exclusive) bucketCells[bucketOffset[b + 1]]
+  private final int[] bucketOffset;
+  private final int[] bucketCells;
+
+  InverseGridProjection(GridProjection projection) {
+    this.projection = projection;
+    int lx = projection.getGridSizeX();
+    int ly = projection.getGridSizeY();
+    this.latticeSizeX = lx + 2;
+    this.latticeSizeY = ly + 2;
+    this.latticeX = new double[latticeSizeX * latticeSizeY];
+    this.latticeY = new double[latticeSizeX * latticeSizeY];
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    for (int a = 0; a < latticeSizeX; a++) {
+      int gridX = Math.min(Math.max(a - 1, 0), lx - 1);
+      for (int b = 0; b < latticeSizeY; b++) {
+        int gridY = Math.min(Math.max(b - 1, 0), ly - 1);
+        int gridIndex = gridX * ly + gridY;
+        int latticeIndex = a * latticeSizeY + b;
+        latticeX[latticeIndex] = latticeCoordinate(a, lx) + projection.getProjectedX(gridIndex) - gridX - 0.5;
+        latticeY[latticeIndex] = latticeCoordinate(b, ly) + projection.getProjectedY(gridIndex) - gridY - 0.5;
+        minX = Math.min(minX, latticeX[latticeIndex]);
+        minY = Math.min(minY, latticeY[latticeIndex]);
+        maxX = Math.max(maxX, latticeX[latticeIndex]);
+        maxY = Math.max(maxY, latticeY[latticeIndex]);
+      }
+    }
+
+    // about as many buckets as cells
+    int cellCountX = latticeSizeX - 1;
+    int cellCountY = latticeSizeY - 1;
+    this.bucketMinX = minX;
+    this.bucketMinY = minY;
+    double size = Math.max((maxX - minX) / cellCountX, (maxY - minY) / cellCountY);
+    this.bucketSize = size > 0. ? size : 1.;
+    this.bucketCountX = Math.max(1, (int) Math.ceil((maxX - minX) / bucketSize));
+    this.bucketCountY = Math.max(1, (int) Math.ceil((maxY - minY) / bucketSize));
+
+    this.bucketOffset = new int[bucketCountX * bucketCountY + 1];
+    for (int cell = 0; cell < cellCountX * cellCountY; cell++) {
+      forEachBucketOfCell(cell, bucket -> bucketOffset[bucket + 1]++);
+    }
+    for (int bucket = 0; bucket < bucketCountX * bucketCountY; bucket++) {
+      bucketOffset[bucket + 1] += bucketOffset[bucket];
+    }
+    this.bucketCells = new int[bucketOffset[bucketCountX * bucketCountY]];
+    int[] bucketFill = new int[bucketCountX * bucketCountY];
+    for (int cell = 0; cell < cellCountX * cellCountY; cell++) {
+      int currentCell = cell;
+      forEachBucketOfCell(cell, bucket -> bucketCells[bucketOffset[bucket] + bucketFill[bucket]++] = currentCell);
+    }
+  }
+
+  private static double latticeCoordinate(int latticeIndex, int gridSize) {
+    if (latticeIndex == 0) {
+      return 0.;
+    }
+    if (latticeIndex == gridSize + 1) {
+      return gridSize;
+    }
+    return latticeIndex - 0.5;
+  }
+
+  private interface BucketConsumer {
+    void accept(int bucket);
+  }
+
+  private void forEachBucketOfCell(int cell, BucketConsumer consumer) {
+    int cellCountY = latticeSizeY - 1;
+    int a = cell / cellCountY;
+    int b = cell % cellCountY;
+    int p00 = a * latticeSizeY + b;
+    int p10 = p00 + latticeSizeY;
+    double minX = Math.min(Math.min(latticeX[p00], latticeX[p00 + 1]), Math.min(latticeX[p10], latticeX[p10 + 1]));
+    double maxX = Math.max(Math.max(latticeX[p00], latticeX[p00 + 1]), Math.max(latticeX[p10], latticeX[p10 + 1]));
+    double minY = Math.min(Math.min(latticeY[p00], latticeY[p00 + 1]), Math.min(latticeY[p10], latticeY[p10 + 1]));
+    double maxY = Math.max(Math.max(latticeY[p00], latticeY[p00 + 1]), Math.max(latticeY[p10], latticeY[p10 + 1]));
+    int fromX = bucketX(minX);
+    int toX = bucketX(maxX);
+    int fromY = bucketY(minY);
+    int toY = bucketY(maxY);
+    for (int i = fromX; i <= toX; i++) {
+      for (int j = fromY; j <= toY; j++) {
+        consumer.accept(i * bucketCountY + j);
+      }
+    }
+  }
+
+  private int bucketX(double x) {
+    return Math.min(Math.max((int) Math.floor((x - bucketMinX) / bucketSize), 0), bucketCountX - 1);
+  }
+
+  private int bucketY(double y) {
+    return Math.min(Math.max((int) Math.floor((y - bucketMinY) / bucketSize), 0), bucketCountY - 1);
+  }
+
+  /**
+   * Maps the given points of the cartogram back to coordinates of the input map. Points that are not covered
+   * by the projected grid are mapped to NaN. If the projection folded the grid, any of the matching locations
+   * is returned. Output arrays may be the input arrays. No objects are allocated per point.
+   *
+   * @param xs The x coordinates of the points in the coordinates of the result regions.
+   * @param ys The y coordinates of the points in the coordinates of the result regions.
+   * @param outX Receives the x coordinates in the input map, at least as long as the input.
+   * @param outY Receives the y coordinates in the input map, at least as long as the input.
+   * @param parallelismConfig Defines if the points are processed in parallel.
+   */
+  public void inverse(double[] xs, double[] ys, double[] outX, double[] outY, ParallelismConfig parallelismConfig) {
+    if (xs.length != ys.length || outX.length < xs.length || outY.length < xs.length) {
+      throw new IllegalArgumentException("Coordinate arrays do not match: " + xs.length + ", " + ys.length
+        + ", " + outX.length + ", " + outY.length);
+    }
+    parallelismConfig.apply(IntStream.range(0, xs.length))
+      .forEach(k -> inverse(xs[k], ys[k], outX, outY, k));
+  }
+
+  private void inverse(double x, double y, double[] outX, double[] outY, int outIndex) {
+    int lx = projection.getGridSizeX();
+    int ly = projection.getGridSizeY();
+    double initialScalingFactor = projection.getInitialScalingFactor();
+    if (projection.isScaleToOriginalPolygonRegion()) {
+      x = (x - projection.getInitialDeltaX()) / initialScalingFactor;
+      y = (y - projection.getInitialDeltaY()) / initialScalingFactor;
+    }
+    double pointX = (x - 0.5 * lx) / projection.getResultScalingFactor() + 0.5 * lx;
+    double pointY = (y - 0.5 * ly) / projection.getResultScalingFactor() + 0.5 * ly;
+    outX[outIndex] = Double.NaN;
+    outY[outIndex] = Double.NaN;
+    if (!(pointX >= bucketMinX && pointY >= bucketMinY)) {
+      return;
+    }
+    int bucketX = (int) ((pointX - bucketMinX) / bucketSize);
+    int bucketY = (int) ((pointY - bucketMinY) / bucketSize);
+    if (bucketX > bucketCountX || bucketY > bucketCountY) {
+      return;
+    }
+    // the maximum can be exactly on the upper border of the last bucket
+    int bucket = Math.min(bucketX, bucketCountX - 1) * bucketCountY + Math.min(bucketY, bucketCountY - 1);
+    int cellCountY = latticeSizeY - 1;
+    for (int i = bucketOffset[bucket]; i < bucketOffset[bucket + 1]; i++) {
+      int cell = bucketCells[i];
+      int a = cell / cellCountY;
+      int b = cell % cellCountY;
+      if (invertCell(a, b, pointX, pointY, outX, outY, outIndex)) {
+        outX[outIndex] = outX[outIndex] * initialScalingFactor + projection.getInitialDeltaX();
+        outY[outIndex] = outY[outIndex] * initialScalingFactor + projection.getInitialDeltaY();
+        return;
+      }
+    }
+  }
+
+  /*
+   * Solves p = p00 + u*(p10-p00) + v*(p01-p00) + u*v*(p00-p10+p11-p01) for u and v in [0,1] and writes the
+   * corresponding point of the undeformed cell in L-space.
+   */
+  private boolean invertCell(int a, int b, double pointX, double pointY, double[] outX, double[] outY, int outIndex) {
+    int p00 = a * latticeSizeY + b;
+    int p10 = p00 + latticeSizeY;
+    int p01 = p00 + 1;
+    int p11 = p10 + 1;
+    double ex = latticeX[p10] - latticeX[p00];
+    double ey = latticeY[p10] - latticeY[p00];
+    double fx = latticeX[p01] - latticeX[p00];
+    double fy = latticeY[p01] - latticeY[p00];
+    double gx = latticeX[p00] - latticeX[p10] + latticeX[p11] - latticeX[p01];
+    double gy = latticeY[p00] - latticeY[p10] + latticeY[p11] - latticeY[p01];
+    double hx = pointX - latticeX[p00];
+    double hy = pointY - latticeY[p00];
+
+    double k2 = gx * fy - gy * fx;
+    double k1 = ex * fy - ey * fx + hx * gy - hy * gx;
+    double k0 = hx * ey - hy * ex;
+    double v;
+    if (Math.abs(k2) < EPSILON * Math.abs(k1)) {
+      if (k1 == 0.) {
+        return false;
+      }
+      v = -k0 / k1;
+      if (!isCellParameter(v)) {
+        return false;
+      }
+    } else {
+      double discriminant = k1 * k1 - 4. * k0 * k2;
+      if (discriminant < 0.) {
+        return false;
+      }
+      double root = Math.sqrt(discriminant);
+      v = (-k1 - root) / (2. * k2);
+      if (!isCellParameter(v) || !isCellParameter(solveU(v, ex, ey, gx, gy, fx, fy, hx, hy))) {
+        v = (-k1 + root) / (2. * k2);
+      }
+      if (!isCellParameter(v)) {
+        return false;
+      }
+    }
+    double u = solveU(v, ex, ey, gx, gy, fx, fy, hx, hy);
+    if (!isCellParameter(u)) {
+      return false;
+    }
+    double cellMinX = latticeCoordinate(a, projection.getGridSizeX());
+    double cellMaxX = latticeCoordinate(a + 1, projection.getGridSizeX());
+    double cellMinY = latticeCoordinate(b, projection.getGridSizeY());
+    double cellMaxY = latticeCoordinate(b + 1, projection.getGridSizeY());
+    outX[outIndex] = cellMinX + Math.min(Math.max(u, 0.), 1.) * (cellMaxX - cellMinX);
+    outY[outIndex] = cellMinY + Math.min(Math.max(v, 0.), 1.) * (cellMaxY - cellMinY);
+    return true;
+  }
+
+  private static double solveU(double v, double ex, double ey, double gx, double gy, double fx, double fy, double hx, double hy) {
+    double denominatorX = ex + gx * v;
+    double denominatorY = ey + gy * v;
+    // use the better conditioned coordinate
+    if (Math.abs(denominatorX) >= Math.abs(denominatorY)) {
+      return denominatorX == 0. ? Double.NaN : (hx - fx * v) / denominatorX;
+    }
+    return (hy - fy * v) / denominatorY;
+  }
+
+  private static boolean isCellParameter(double value) {
+    return value >= -EPSILON && value <= 1. + EPSILON;
+  }
+}
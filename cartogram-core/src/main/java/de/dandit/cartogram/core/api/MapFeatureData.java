@@ -12,6 +12,7 @@ import java.util.Map;
  * <li>mapMaxX: The maximum x value of the bounding box of all features.</li>
  * <li>mapMinY: The minimum y value of the bounding box of all features.</li>
  * <li>mapMaxY: The maximum y value of the bounding box of all features.</li>
+ * <li>layers: Optional further geometries that are deformed along with the regions, see {@link GeometryLayer}.</li>
  * </ul>
  */
 public class MapFeatureData {
@@ -24,10 +25,19 @@ public class MapFeatureData {
 
   private final Map<Integer, Double> targetAreaPerRegion; // use negative for invalid areas, use NaN for explicitly set not available value
   private final List<Region> regions;
+  private final List<GeometryLayer> layers;
 
   public MapFeatureData(double mapMinX, double mapMinY, double mapMaxX, double mapMaxY,
                         List<Region> regions,
                         double[] targetAreaPerRegion) {
+    this(mapMinX, mapMinY, mapMaxX, mapMaxY, regions, targetAreaPerRegion, List.of());
+  }
+
+  public MapFeatureData(double mapMinX, double mapMinY, double mapMaxX, double mapMaxY,
+                        List<Region> regions,
+                        double[] targetAreaPerRegion,
+                        List<GeometryLayer> layers) {
+    this.layers = layers;
     this.mapMinX = mapMinX;
     this.mapMinY = mapMinY;
     this.mapMaxX = mapMaxX;
@@ -62,4 +72,8 @@ public class MapFeatureData {
   public List<Region> getRegions() {
     return regions;
   }
+
+  public List<GeometryLayer> getLayers() {
+    return layers;
+  }
 }
@@ -0,0 +1,101 @@
+package de.dandit.cartogram.core.api;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+import de.dandit.cartogram.core.context.MapGrid;
+import de.dandit.cartogram.core.context.MapGridSource;
+
+/**
+ * Keeps the grids and FFT plans of finished calculations to lease them to later calculations that need a grid
+ * of the same size, created by the same {@link FftPlanFactory} and {@link GridStorage}. As grids are large and
+ * planning is expensive this pays off when cartograms of similar maps are calculated repeatedly.
+ * A pool can be shared by concurrent calculations, each grid is only leased to one calculation at a time.
+ * If retaining a returned grid exceeds the maximum retained memory, the grids returned the longest time ago are
+ * dropped.
+ */
+public class MapGridPool {
+
+  private final long maxRetainedBytes;
+  private final Deque<MapGrid> idleGrids = new ArrayDeque<>(); // most recently returned last
+  private long retainedBytes;
+
+  private MapGridPool(long maxRetainedBytes) {
+    if (maxRetainedBytes < 0) {
+      throw new IllegalArgumentException("Maximum retained bytes must not be negative: " + maxRetainedBytes);
+    }
+    this.maxRetainedBytes = maxRetainedBytes;
+  }
+
+  /**
+   * @return A pool that does not retain any grid, every calculation creates its own.
+   */
+  public static MapGridPool ofNone() {
+    return new MapGridPool(0);
+  }
+
+  /**
+   * @param maxRetainedBytes The maximum amount of bytes that the idle grids may hold in total, including off-heap memory.
+   */
+  public static MapGridPool ofMaxRetainedBytes(long maxRetainedBytes) {
+    return new MapGridPool(maxRetainedBytes);
+  }
+
+  public boolean isRetainingGrids() {
+    return maxRetainedBytes > 0;
+  }
+
+  /**
+   * @return A source that leases the grids of this pool that were created with the given plan factory and storage.
+   */
+  MapGridSource asGridSource(FftPlanFactory fftPlanFactory, GridStorage gridStorage) {
+    return (lx, ly, initialDeltaX, initialDeltaY, initialScalingFactor, useRegionRuns) ->
+      lease(fftPlanFactory, gridStorage, lx, ly, initialDeltaX, initialDeltaY, initialScalingFactor, useRegionRuns);
+  }
+
+  private MapGrid lease(FftPlanFactory fftPlanFactory, GridStorage gridStorage, int lx, int ly,
+                        double initialDeltaX, double initialDeltaY, double initialScalingFactor, boolean useRegionRuns) {
+    MapGrid leased = pollIdleGrid(fftPlanFactory, gridStorage, lx, ly, useRegionRuns);
+    if (leased == null) {
+      return new MapGrid(fftPlanFactory, gridStorage, lx, ly, initialDeltaX, initialDeltaY, initialScalingFactor, useRegionRuns);
+    }
+    leased.setInitialTransformation(initialDeltaX, initialDeltaY, initialScalingFactor);
+    return leased;
+  }
+
+  private synchronized MapGrid pollIdleGrid(FftPlanFactory fftPlanFactory, GridStorage gridStorage, int lx, int ly, boolean useRegionRuns) {
+    Iterator<MapGrid> mostRecentFirst = idleGrids.descendingIterator();
+    while (mostRecentFirst.hasNext()) {
+      MapGrid candidate = mostRecentFirst.next();
+      if (candidate.matches(fftPlanFactory, gridStorage, lx, ly, useRegionRuns)) {
+        mostRecentFirst.remove();
+        retainedBytes -= candidate.getRetainedBytes();
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a leased grid to the pool. The grid must not be used by the caller afterwards.
+   */
+  void giveBack(MapGrid mapGrid) {
+    if (mapGrid.getRetainedBytes() > maxRetainedBytes) {
+      mapGrid.release();
+      return;
+    }
+    mapGrid.reset();
+    Deque<MapGrid> evicted = new ArrayDeque<>();
+    synchronized (this) {
+      idleGrids.addLast(mapGrid);
+      retainedBytes += mapGrid.getRetainedBytes();
+      while (retainedBytes > maxRetainedBytes) {
+        MapGrid oldest = idleGrids.pollFirst();
+        retainedBytes -= oldest.getRetainedBytes();
+        evicted.add(oldest);
+      }
+    }
+    evicted.forEach(MapGrid::release);
+  }
+}
@@ -18,6 +18,10 @@ public class ParallelismConfig {
     return new ParallelismConfig(true);
   }
 
+  public boolean isRunInParallel() {
+    return runInParallel;
+  }
+
   public IntStream apply(IntStream stream) {
     if (!runInParallel) {
       return stream;
@@ -0,0 +1,75 @@
+package de.dandit.cartogram.core.api;
+
+import java.util.List;
+
+import de.dandit.cartogram.core.context.PackedRings;
+import de.dandit.cartogram.core.context.RegionData;
+
+/**
+ * The regions at some time of an integration. The coordinates are in L-space or, if the result is scaled to the
+ * original polygon region, in coordinates of the input map. Like the result regions they are scaled to keep the total
+ * area, so the snapshot at time 1 of the last integration is close to the result.
+ * The vertices of all rings are packed into two arrays, ring by ring in the order of {@link #getRingStart(int)}.
+ * A snapshot is only valid during {@link ProjectionSnapshotListener#onSnapshot(ProjectionSnapshot)}.
+ */
+public class ProjectionSnapshot {
+  private final int integration;
+  private final double time;
+  private final PackedRings rings;
+  private final RegionData regionData;
+
+  ProjectionSnapshot(int integration, double time, PackedRings rings, RegionData regionData) {
+    this.integration = integration;
+    this.time = time;
+    this.rings = rings;
+    this.regionData = regionData;
+  }
+
+  /**
+   * @return The integration that is deformed, starting with 1. Every integration starts where the
+   * previous one ended.
+   */
+  public int getIntegration() {
+    return integration;
+  }
+
+  /**
+   * @return The time in (0,1] of the integration.
+   */
+  public double getTime() {
+    return time;
+  }
+
+  public int getRingCount() {
+    return rings.getRingCount();
+  }
+
+  public int getRingStart(int ring) {
+    return rings.getRingStart(ring);
+  }
+
+  public int getRingEnd(int ring) {
+    return rings.getRingEnd(ring);
+  }
+
+  /**
+   * @return The x coordinates of all vertices, not a copy.
+   */
+  public double[] getPointsX() {
+    return rings.getX();
+  }
+
+  /**
+   * @return The y coordinates of all vertices, not a copy.
+   */
+  public double[] getPointsY() {
+    return rings.getY();
+  }
+
+  /**
+   * @return Copies of the regions in the same order and structure as the result regions.
+   */
+  public List<ResultRegion> createResultRegions() {
+    return CartogramApi.createResultRegions(regionData, rings);
+  }
+}
@@ -0,0 +1,13 @@
+package de.dandit.cartogram.core.api;
+
+/**
+ * Receives the snapshots requested by {@link ProjectionSnapshots}.
+ */
+public interface ProjectionSnapshotListener {
+
+  /**
+   * Called during the calculation, so it should return quickly. The snapshot must not be kept after returning,
+   * its coordinates are overwritten by the next snapshot.
+   */
+  void onSnapshot(ProjectionSnapshot snapshot);
+}
@@ -0,0 +1,70 @@
+package de.dandit.cartogram.core.api;
+
+import java.util.Objects;
+
+/**
+ * Requests snapshots of the regions while they are deformed, e.g. to animate the morph from the input map to the
+ * cartogram. Every integration moves the regions from time 0 to time 1, a snapshot is taken whenever the
+ * integration passes one of the requested times. The snapshots are interpolated from the projection of the grid
+ * that the integration calculates anyway, so they cost a projection of the vertices each but no additional
+ * integration steps. Snapshots are not stored, they are handed to the listener as soon as they are taken.
+ */
+public class ProjectionSnapshots {
+  private final double[] times;
+  private final ProjectionSnapshotListener listener;
+
+  private ProjectionSnapshots(double[] times, ProjectionSnapshotListener listener) {
+    this.times = times;
+    this.listener = listener;
+  }
+
+  /**
+   * @return No snapshots are taken.
+   */
+  public static ProjectionSnapshots ofNone() {
+    return new ProjectionSnapshots(new double[0], null);
+  }
+
+  /**
+   * @param times Strictly ascending times in (0,1], snapshots are taken at these times of every integration.
+   * @param listener Receives the snapshots on the calculating thread.
+   */
+  public static ProjectionSnapshots of(double[] times, ProjectionSnapshotListener listener) {
+    Objects.requireNonNull(listener);
+    double lastTime = 0.;
+    for (double time : times) {
+      if (!(time > lastTime) || time > 1.) {
+        throw new IllegalArgumentException("Snapshot times must be strictly ascending in (0,1]: " + time);
+      }
+      lastTime = time;
+    }
+    return new ProjectionSnapshots(times.clone(), listener);
+  }
+
+  /**
+   * @param count The amount of snapshots per integration, taken at equidistant times ending at time 1.
+   * @param listener Receives the snapshots on the calculating thread.
+   */
+  public static ProjectionSnapshots ofEquidistant(int count, ProjectionSnapshotListener listener) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("Snapshot count must be positive: " + count);
+    }
+    double[] times = new double[count];
+    for (int i = 0; i < count; i++) {
+      times[i] = (i + 1.) / count;
+    }
+    return of(times, listener);
+  }
+
+  public boolean isTakingSnapshots() {
+    return times.length > 0;
+  }
+
+  public double[] getTimes() {
+    return times.clone();
+  }
+
+  public ProjectionSnapshotListener getListener() {
+    return listener;
+  }
+}
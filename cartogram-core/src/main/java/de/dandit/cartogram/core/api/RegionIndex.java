@@ -0,0 +1,332 @@
+package de.dandit.cartogram.core.api;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable index to find the region at a point, e.g. the region under the mouse in an interactive map.
+ * The bounding box of all regions is divided into a regular grid of buckets, each knowing the ring edges that
+ * overlap it and which polygons contain its center. A point is inside a polygon if the polygon contains the center of
+ * the point's bucket and the way from the center to the point crosses the polygon's edges an even number of times,
+ * or the other way round. As only the edges of one bucket need to be tested, a lookup takes about constant time.
+ * Interior rings are handled as any other edge of their polygon. Points exactly on an edge may be found in either
+ * of the adjacent regions. Safe to query from multiple threads.
+ */
+public class RegionIndex {
+  private static final int EDGES_PER_BUCKET = 4;
+  private static final int MAX_BUCKETS = 1 << 22;
+
+  private final List<ResultRegion> regions;
+  private final int[] regionIndexByPolygon;
+
+  // edge e goes from (edgeX1[e],edgeY1[e]) to (edgeX2[e],edgeY2[e]) and belongs to polygon edgePolygon[e]
+  private final double[] edgeX1;
+  private final double[] edgeY1;
+  private final double[] edgeX2;
+  private final double[] edgeY2;
+  private final int[] edgePolygon;
+
+  private final double minX;
+  private final double minY;
+  private final double bucketWidth;
+  private final double bucketHeight;
+  private final int bucketCountX;
+  private final int bucketCountY;
+  // bucket (i,j) has index j*bucketCountX+i, its edges are at bucketEdges[bucketEdgeOffset[b]] until (exclusive)
+  // bucketEdges[bucketEdgeOffset[b + 1]], the polygons that contain its center are stored alike
+  private final int[] bucketEdgeOffset;
+  private final int[] bucketEdges;
+  private final int[] bucketPolygonOffset;
+  private final int[] bucketPolygons;
+
+  private RegionIndex(List<ResultRegion> regions, ParallelismConfig parallelismConfig) {
+    this.regions = regions;
+    int polygonCount = 0;
+    int edgeCount = 0;
+    for (ResultRegion region : regions) {
+      for (LightPolygon polygon : region.getPolygons()) {
+        polygonCount++;
+        edgeCount += polygon.getExteriorRingX().length;
+        for (double[] interiorRingX : polygon.getInteriorRingsX()) {
+          edgeCount += interiorRingX.length;
+        }
+      }
+    }
+    this.regionIndexByPolygon = new int[polygonCount];
+    this.edgeX1 = new double[edgeCount];
+    this.edgeY1 = new double[edgeCount];
+    this.edgeX2 = new double[edgeCount];
+    this.edgeY2 = new double[edgeCount];
+    this.edgePolygon = new int[edgeCount];
+    int polygonIndex = 0;
+    int edge = 0;
+    for (int regionIndex = 0; regionIndex < regions.size(); regionIndex++) {
+      for (LightPolygon polygon : regions.get(regionIndex).getPolygons()) {
+        regionIndexByPolygon[polygonIndex] = regionIndex;
+        edge = addRingEdges(polygon.getExteriorRingX(), polygon.getExteriorRingY(), polygonIndex, edge);
+        for (int i = 0; i < polygon.getInteriorRingsX().size(); i++) {
+          edge = addRingEdges(polygon.getInteriorRingsX().get(i), polygon.getInteriorRingsY().get(i), polygonIndex, edge);
+        }
+        polygonIndex++;
+      }
+    }
+
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    for (int e = 0; e < edgeCount; e++) {
+      minX = Math.min(minX, edgeX1[e]);
+      minY = Math.min(minY, edgeY1[e]);
+      maxX = Math.max(maxX, edgeX1[e]);
+      maxY = Math.max(maxY, edgeY1[e]);
+    }
+    if (edgeCount == 0) {
+      minX = minY = maxX = maxY = 0.;
+    }
+    double width = Math.max(maxX - minX, Double.MIN_NORMAL);
+    double height = Math.max(maxY - minY, Double.MIN_NORMAL);
+    int bucketCount = Math.max(1, Math.min(MAX_BUCKETS, edgeCount / EDGES_PER_BUCKET));
+    this.minX = minX;
+    this.minY = minY;
+    this.bucketCountX = (int) Math.max(1, Math.min(bucketCount, Math.round(Math.sqrt(bucketCount * width / height))));
+    this.bucketCountY = Math.max(1, bucketCount / bucketCountX);
+    this.bucketWidth = width / bucketCountX;
+    this.bucketHeight = height / bucketCountY;
+
+    this.bucketEdgeOffset = new int[bucketCountX * bucketCountY + 1];
+    for (int e = 0; e < edgeCount; e++) {
+      forEachBucketOfEdge(e, bucket -> bucketEdgeOffset[bucket + 1]++);
+    }
+    for (int bucket = 0; bucket < bucketCountX * bucketCountY; bucket++) {
+      bucketEdgeOffset[bucket + 1] += bucketEdgeOffset[bucket];
+    }
+    this.bucketEdges = new int[bucketEdgeOffset[bucketCountX * bucketCountY]];
+    int[] bucketFill = new int[bucketCountX * bucketCountY];
+    for (int e = 0; e < edgeCount; e++) {
+      int currentEdge = e;
+      forEachBucketOfEdge(e, bucket -> bucketEdges[bucketEdgeOffset[bucket] + bucketFill[bucket]++] = currentEdge);
+    }
+
+    // the rows of bucket centers are independent scan lines
+    int[][][] polygonsByRow = new int[bucketCountY][][];
+    parallelismConfig.apply(IntStream.range(0, bucketCountY))
+      .forEach(row -> polygonsByRow[row] = findPolygonsContainingCenters(row, regionIndexByPolygon.length));
+    this.bucketPolygonOffset = new int[bucketCountX * bucketCountY + 1];
+    for (int row = 0; row < bucketCountY; row++) {
+      for (int column = 0; column < bucketCountX; column++) {
+        int bucket = row * bucketCountX + column;
+        bucketPolygonOffset[bucket + 1] = bucketPolygonOffset[bucket] + polygonsByRow[row][column].length;
+      }
+    }
+    this.bucketPolygons = new int[bucketPolygonOffset[bucketCountX * bucketCountY]];
+    for (int row = 0; row < bucketCountY; row++) {
+      for (int column = 0; column < bucketCountX; column++) {
+        int[] polygons = polygonsByRow[row][column];
+        System.arraycopy(polygons, 0, bucketPolygons, bucketPolygonOffset[row * bucketCountX + column], polygons.length);
+      }
+    }
+  }
+
+  /**
+   * Builds the index over the given regions. The regions must not be changed afterwards.
+   */
+  public static RegionIndex create(List<ResultRegion> regions, ParallelismConfig parallelismConfig) {
+    return new RegionIndex(regions, parallelismConfig);
+  }
+
+  private int addRingEdges(double[] ringX, double[] ringY, int polygon, int edge) {
+    int n = ringX.length;
+    for (int k = 0; k < n; k++) {
+      int next = k + 1 < n ? k + 1 : 0;
+      edgeX1[edge] = ringX[k];
+      edgeY1[edge] = ringY[k];
+      edgeX2[edge] = ringX[next];
+      edgeY2[edge] = ringY[next];
+      edgePolygon[edge] = polygon;
+      edge++;
+    }
+    return edge;
+  }
+
+  private interface BucketConsumer {
+    void accept(int bucket);
+  }
+
+  private void forEachBucketOfEdge(int edge, BucketConsumer consumer) {
+    int fromX = bucketX(Math.min(edgeX1[edge], edgeX2[edge]));
+    int toX = bucketX(Math.max(edgeX1[edge], edgeX2[edge]));
+    int fromY = bucketY(Math.min(edgeY1[edge], edgeY2[edge]));
+    int toY = bucketY(Math.max(edgeY1[edge], edgeY2[edge]));
+    for (int j = fromY; j <= toY; j++) {
+      for (int i = fromX; i <= toX; i++) {
+        consumer.accept(j * bucketCountX + i);
+      }
+    }
+  }
+
+  private int bucketX(double x) {
+    return Math.min(Math.max((int) Math.floor((x - minX) / bucketWidth), 0), bucketCountX - 1);
+  }
+
+  private int bucketY(double y) {
+    return Math.min(Math.max((int) Math.floor((y - minY) / bucketHeight), 0), bucketCountY - 1);
+  }
+
+  private double centerX(int column) {
+    return minX + (column + 0.5) * bucketWidth;
+  }
+
+  private double centerY(int row) {
+    return minY + (row + 0.5) * bucketHeight;
+  }
+
+  /*
+   * Sweeps the horizontal line through the centers of the row from left to right, toggling the polygons of the
+   * crossed edges. Each crossing is handled in the bucket it lies in, which knows all edges crossing it.
+   */
+  private int[][] findPolygonsContainingCenters(int row, int polygonCount) {
+    double y = centerY(row);
+    boolean[] inside = new boolean[polygonCount];
+    int[] insidePolygons = new int[8];
+    int insideCount = 0;
+    int[][] polygonsByColumn = new int[bucketCountX][];
+    for (int column = 0; column < bucketCountX; column++) {
+      int bucket = row * bucketCountX + column;
+      double centerX = centerX(column);
+      for (int pass = 0; pass < 2; pass++) {
+        // first the crossings left of the center, then the remaining ones
+        for (int i = bucketEdgeOffset[bucket]; i < bucketEdgeOffset[bucket + 1]; i++) {
+          int edge = bucketEdges[i];
+          if ((edgeY1[edge] > y) == (edgeY2[edge] > y)) {
+            continue;
+          }
+          double crossingX = crossingX(edge, y);
+          if (bucketX(crossingX) != column || (crossingX < centerX) != (pass == 0)) {
+            continue;
+          }
+          int polygon = edgePolygon[edge];
+          inside[polygon] = !inside[polygon];
+          if (inside[polygon]) {
+            if (insideCount == insidePolygons.length) {
+              insidePolygons = Arrays.copyOf(insidePolygons, 2 * insideCount);
+            }
+            insidePolygons[insideCount++] = polygon;
+          } else {
+            for (int k = 0; k < insideCount; k++) {
+              if (insidePolygons[k] == polygon) {
+                insidePolygons[k] = insidePolygons[--insideCount];
+                break;
+              }
+            }
+          }
+        }
+        if (pass == 0) {
+          polygonsByColumn[column] = Arrays.copyOf(insidePolygons, insideCount);
+        }
+      }
+    }
+    return polygonsByColumn;
+  }
+
+  private double crossingX(int edge, double y) {
+    double x1 = edgeX1[edge];
+    double x2 = edgeX2[edge];
+    double crossing = x1 + (y - edgeY1[edge]) * (x2 - x1) / (edgeY2[edge] - edgeY1[edge]);
+    return Math.min(Math.max(crossing, Math.min(x1, x2)), Math.max(x1, x2));
+  }
+
+  private double crossingY(int edge, double x) {
+    double y1 = edgeY1[edge];
+    double y2 = edgeY2[edge];
+    double crossing = y1 + (x - edgeX1[edge]) * (y2 - y1) / (edgeX2[edge] - edgeX1[edge]);
+    return Math.min(Math.max(crossing, Math.min(y1, y2)), Math.max(y1, y2));
+  }
+
+  /**
+   * @return The index of the region at the given point in the list of regions, -1 if there is none.
+   * If regions overlap at the point any of them is returned.
+   */
+  public int findRegionIndex(double x, double y) {
+    if (!(x >= minX && x <= minX + bucketWidth * bucketCountX && y >= minY && y <= minY + bucketHeight * bucketCountY)) {
+      return -1;
+    }
+    int column = bucketX(x);
+    int row = bucketY(y);
+    int bucket = row * bucketCountX + column;
+    for (int i = bucketPolygonOffset[bucket]; i < bucketPolygonOffset[bucket + 1]; i++) {
+      int polygon = bucketPolygons[i];
+      if (!crossesOddTimes(bucket, polygon, centerX(column), centerY(row), x, y)) {
+        return regionIndexByPolygon[polygon];
+      }
+    }
+    for (int i = bucketEdgeOffset[bucket]; i < bucketEdgeOffset[bucket + 1]; i++) {
+      int polygon = edgePolygon[bucketEdges[i]];
+      if (!containsCenter(bucket, polygon) && crossesOddTimes(bucket, polygon, centerX(column), centerY(row), x, y)) {
+        return regionIndexByPolygon[polygon];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the region of each of the given points, see {@link #findRegionIndex(double, double)}.
+   * No objects are allocated per point.
+   */
+  public void findRegionIndices(double[] xs, double[] ys, int[] out, ParallelismConfig parallelismConfig) {
+    if (xs.length != ys.length || out.length < xs.length) {
+      throw new IllegalArgumentException("Coordinate arrays do not match: " + xs.length + ", " + ys.length + ", " + out.length);
+    }
+    parallelismConfig.apply(IntStream.range(0, xs.length))
+      .forEach(k -> out[k] = findRegionIndex(xs[k], ys[k]));
+  }
+
+  /**
+   * @return The region at the given point or null if there is none.
+   */
+  public ResultRegion findRegion(double x, double y) {
+    int regionIndex = findRegionIndex(x, y);
+    return regionIndex >= 0 ? regions.get(regionIndex) : null;
+  }
+
+  private boolean containsCenter(int bucket, int polygon) {
+    for (int i = bucketPolygonOffset[bucket]; i < bucketPolygonOffset[bucket + 1]; i++) {
+      if (bucketPolygons[i] == polygon) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Counts the crossings with the polygon's edges on the way from the center horizontally to (x, centerY),
+   * then vertically to (x, y). Both legs stay inside the bucket.
+   */
+  private boolean crossesOddTimes(int bucket, int polygon, double centerX, double centerY, double x, double y) {
+    boolean odd = false;
+    double fromX = Math.min(centerX, x);
+    double toX = Math.max(centerX, x);
+    double fromY = Math.min(centerY, y);
+    double toY = Math.max(centerY, y);
+    for (int i = bucketEdgeOffset[bucket]; i < bucketEdgeOffset[bucket + 1]; i++) {
+      int edge = bucketEdges[i];
+      if (edgePolygon[edge] != polygon) {
+        continue;
+      }
+      if ((edgeY1[edge] > centerY) != (edgeY2[edge] > centerY)) {
+        double crossingX = crossingX(edge, centerY);
+        if (crossingX >= fromX && crossingX < toX) {
+          odd = !odd;
+        }
+      }
+      if ((edgeX1[edge] > x) != (edgeX2[edge] > x)) {
+        double crossingY = crossingY(edge, x);
+        if (crossingY >= fromY && crossingY < toY) {
+          odd = !odd;
+        }
+      }
+    }
+    return odd;
+  }
+}
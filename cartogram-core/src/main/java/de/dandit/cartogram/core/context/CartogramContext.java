@@ -6,13 +6,17 @@ public class CartogramContext {
 
   private final MapGrid mapGrid;
   private final RegionData regionData;
+  private final LayerData layerData;
   private final boolean isSingleRegion;
   private final Logging logging;
+  // the factor the cartogram rings got scaled with around the grid's center to keep the initial total area
+  private double resultScalingFactor = 1.;
 
-  public CartogramContext(Logging logging, MapGrid mapGrid, RegionData regionData, boolean isSingleRegion) {
+  public CartogramContext(Logging logging, MapGrid mapGrid, RegionData regionData, LayerData layerData, boolean isSingleRegion) {
     this.logging = logging;
     this.mapGrid = mapGrid;
     this.regionData = regionData;
+    this.layerData = layerData;
     this.isSingleRegion = isSingleRegion;
   }
 
@@ -28,8 +32,20 @@ public class CartogramContext {
     return regionData;
   }
 
+  public LayerData getLayerData() {
+    return layerData;
+  }
+
   public Logging getLogging() {
     return logging;
   }
 
+  public double getResultScalingFactor() {
+    return resultScalingFactor;
+  }
+
+  public void setResultScalingFactor(double resultScalingFactor) {
+    this.resultScalingFactor = resultScalingFactor;
+  }
+
 }
@@ -0,0 +1,186 @@
+package de.dandit.cartogram.core.context;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import de.dandit.cartogram.core.api.GridStorage;
+
+/**
+ * A field of doubles with one value per grid cell in the same layout as the grid arrays (cell (x,y) at index x*ly+y).
+ * Depending on the {@link GridStorage} the values are kept on the heap or in off-heap memory, the integration and
+ * projection kernels only access them through this class.
+ */
+public abstract class GridField {
+
+  public static GridField allocate(GridStorage storage, int size) {
+    return storage.isOffHeap() ? new OffHeapGridField(size) : new HeapGridField(new double[size]);
+  }
+
+  /**
+   * @return A field backed by the given array.
+   */
+  public static GridField wrap(double[] values) {
+    return new HeapGridField(values);
+  }
+
+  public abstract int size();
+
+  public abstract double get(int index);
+
+  public abstract void set(int index, double value);
+
+  public abstract void fill(double value);
+
+  public abstract void copyFrom(GridField source);
+
+  /**
+   * @return The values as heap array. This is the backing array for heap fields and a copy otherwise.
+   */
+  public abstract double[] asArray();
+
+  /**
+   * Frees the memory of this field. It must not be accessed afterwards. Does nothing for heap fields which are
+   * freed by the garbage collector.
+   */
+  public abstract void release();
+
+  private static class HeapGridField extends GridField {
+    private final double[] values;
+
+    private HeapGridField(double[] values) {
+      this.values = values;
+    }
+
+    @Override
+    public int size() {
+      return values.length;
+    }
+
+    @Override
+    public double get(int index) {
+      return values[index];
+    }
+
+    @Override
+    public void set(int index, double value) {
+      values[index] = value;
+    }
+
+    @Override
+    public void fill(double value) {
+      Arrays.fill(values, value);
+    }
+
+    @Override
+    public void copyFrom(GridField source) {
+      if (source instanceof HeapGridField) {
+        System.arraycopy(((HeapGridField) source).values, 0, values, 0, values.length);
+      } else {
+        ((OffHeapGridField) source).values.duplicate().get(values);
+      }
+    }
+
+    @Override
+    public double[] asArray() {
+      return values;
+    }
+
+    @Override
+    public void release() {
+    }
+  }
+
+  private static class OffHeapGridField extends GridField {
+    private final ByteBuffer memory;
+    private final DoubleBuffer values;
+
+    private OffHeapGridField(int size) {
+      this.memory = ByteBuffer.allocateDirect(size * Double.BYTES).order(ByteOrder.nativeOrder());
+      this.values = memory.asDoubleBuffer();
+    }
+
+    @Override
+    public int size() {
+      return values.capacity();
+    }
+
+    @Override
+    public double get(int index) {
+      return values.get(index);
+    }
+
+    @Override
+    public void set(int index, double value) {
+      values.put(index, value);
+    }
+
+    @Override
+    public void fill(double value) {
+      for (int i = 0; i < values.capacity(); i++) {
+        values.put(i, value);
+      }
+    }
+
+    @Override
+    public void copyFrom(GridField source) {
+      if (source instanceof HeapGridField) {
+        values.duplicate().put(((HeapGridField) source).values);
+      } else {
+        values.duplicate().put(((OffHeapGridField) source).values.duplicate());
+      }
+    }
+
+    @Override
+    public double[] asArray() {
+      double[] copy = new double[values.capacity()];
+      values.duplicate().get(copy);
+      return copy;
+    }
+
+    @Override
+    public void release() {
+      DirectMemory.free(memory);
+    }
+  }
+
+  /*
+   * Direct buffers are otherwise only freed after they got garbage collected, which can take long as they
+   * hardly take any heap space. If the JDK does not offer to free them explicitly we fall back to that.
+   */
+  private static class DirectMemory {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+      Object unsafe = null;
+      Method invokeCleaner = null;
+      try {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        unsafe = theUnsafe.get(null);
+        invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (ReflectiveOperationException | RuntimeException e) {
+        unsafe = null;
+        invokeCleaner = null;
+      }
+      UNSAFE = unsafe;
+      INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private static void free(ByteBuffer buffer) {
+      if (INVOKE_CLEANER == null) {
+        return;
+      }
+      try {
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+      } catch (ReflectiveOperationException e) {
+        // keep it for the garbage collector
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package de.dandit.cartogram.core.context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dandit.cartogram.core.api.GeometryLayer;
+
+/**
+ * The parts of all geometry layers packed like the rings of the regions, see {@link GeometryLayer}.
+ */
+public class LayerData {
+  private final int[] layerId;
+  // the first part of each layer, one more than layers
+  private final int[] layerPartOffset;
+  // double buffered like the rings of the regions
+  private PackedRings parts;
+  private PackedRings cartogramParts;
+
+  private LayerData(int[] layerId, int[] layerPartOffset, PackedRings parts) {
+    this.layerId = layerId;
+    this.layerPartOffset = layerPartOffset;
+    this.parts = parts;
+    this.cartogramParts = parts.createEmptyCopy();
+  }
+
+  public static LayerData pack(List<GeometryLayer> layers) {
+    int[] layerId = new int[layers.size()];
+    int[] layerPartOffset = new int[layers.size() + 1];
+    List<double[]> partsX = new ArrayList<>();
+    List<double[]> partsY = new ArrayList<>();
+    for (int i = 0; i < layers.size(); i++) {
+      GeometryLayer layer = layers.get(i);
+      layerId[i] = layer.getLayerId();
+      partsX.addAll(layer.getPartsX());
+      partsY.addAll(layer.getPartsY());
+      layerPartOffset[i + 1] = partsX.size();
+    }
+    PackedRings parts = PackedRings.pack(partsX.toArray(double[][]::new), partsY.toArray(double[][]::new));
+    return new LayerData(layerId, layerPartOffset, parts);
+  }
+
+  public boolean isEmpty() {
+    return parts.getPointCount() == 0;
+  }
+
+  public int getLayerCount() {
+    return layerId.length;
+  }
+
+  public int getLayerId(int layer) {
+    return layerId[layer];
+  }
+
+  public int getLayerPartStart(int layer) {
+    return layerPartOffset[layer];
+  }
+
+  public int getLayerPartEnd(int layer) {
+    return layerPartOffset[layer + 1];
+  }
+
+  public PackedRings getParts() {
+    return parts;
+  }
+
+  public PackedRings getCartogramParts() {
+    return cartogramParts;
+  }
+
+  /**
+   * Makes the cartogram parts the current parts, see {@link RegionData#swapRings()}.
+   */
+  public void swapParts() {
+    PackedRings previousParts = parts;
+    parts = cartogramParts;
+    cartogramParts = previousParts;
+  }
+}
@@ -1,75 +1,145 @@
 package de.dandit.cartogram.core.context;
 
-import java.util.Arrays;
-
+import de.dandit.cartogram.core.api.GridStorage;
 import de.dandit.cartogram.core.dft.FftPlan2D;
+import de.dandit.cartogram.core.dft.SpectralConvolution2D;
 import de.dandit.cartogram.core.api.FftPlanFactory;
 
 public class MapGrid {
   private final int lx;
   private final int ly;
-  private final double initialDeltaX;
-  private final double initialDeltaY;
-  private final double initialScalingFactor;
+  private double initialDeltaX;
+  private double initialDeltaY;
+  private double initialScalingFactor;
   private final double absoluteTolerance;
-  private final double[] gridSpeedX;
-  private final double[] gridSpeedY;
-  private final double[] gridProjectionX;
-  private final double[] gridProjectionY;
-  private final double[] gridProjectionXSwapper;
-  private final double[] gridProjectionYSwapper;
+  private final FftPlanFactory fftPlanFactory;
+  private final GridStorage gridStorage;
+  private final GridField gridSpeedX;
+  private final GridField gridSpeedY;
+  private final GridField gridProjectionX;
+  private final GridField gridProjectionY;
+  private final GridField gridProjectionXSwapper;
+  private final GridField gridProjectionYSwapper;
+  // scratch fields of the integration, the projection after the integration reuses the euler fields as displacement
+  private final GridField eulerX;
+  private final GridField eulerY;
+  private final GridField midpointX;
+  private final GridField midpointY;
+  private final GridField interpolatedSpeedX;
+  private final GridField interpolatedSpeedY;
+  private final GridField interpolatedHalfSpeedX;
+  private final GridField interpolatedHalfSpeedY;
   private final double[] rhoFt;
   private final double[] rhoInit;
-  private final int[][] gridIndexToRegionIndex;
-  private final FftPlan2D gridFluxInitX;
-  private final FftPlan2D gridFluxInitY;
+  private final int[] gridIndexToRegionIndex; // same layout as rhoInit, -1 for cells outside of all regions
+  private boolean regionsOverlapInGrid;
+  private RegionRuns regionRuns;
+  private final SpectralConvolution2D gridFluxInitX;
+  private final SpectralConvolution2D gridFluxInitY;
   private final FftPlan2D rho;
+  private final FftPlan2D rhoBackward;
+  private final SpectralKernels spectralKernels;
+  private double gaussianBlurWidth = Double.NaN;
+  private SpectralConvolution2D gaussianBlur;
 
-  public MapGrid(FftPlanFactory fftPlanFactory, int lx, int ly, double initialDeltaX, double initialDeltaY, double initialScalingFactor) {
+  /**
+   * @param useRegionRuns If true the region of each cell is stored as {@link RegionRuns} instead of the dense
+   *                      gridIndexToRegionIndex, which is then null.
+   */
+  public MapGrid(FftPlanFactory fftPlanFactory, GridStorage gridStorage, int lx, int ly,
+                 double initialDeltaX, double initialDeltaY, double initialScalingFactor, boolean useRegionRuns) {
+    this.fftPlanFactory = fftPlanFactory;
+    this.gridStorage = gridStorage;
     this.lx = lx;
     this.ly = ly;
-    this.initialDeltaX = initialDeltaX;
-    this.initialDeltaY = initialDeltaY;
-    this.initialScalingFactor = initialScalingFactor;
     this.absoluteTolerance = Math.min(lx, ly) * 1e-6;
-    this.gridSpeedX = new double[lx * ly];
-    this.gridSpeedY = new double[lx * ly];
-    this.gridProjectionX = initProjectionXOnGrid(lx, ly);
-    this.gridProjectionY = initProjectionYOnGrid(lx, ly);
-    this.gridProjectionXSwapper = initEmptyProjection(lx, ly);
-    this.gridProjectionYSwapper = initEmptyProjection(lx, ly);
+    this.gridSpeedX = GridField.allocate(gridStorage, lx * ly);
+    this.gridSpeedY = GridField.allocate(gridStorage, lx * ly);
+    this.gridProjectionX = GridField.allocate(gridStorage, lx * ly);
+    this.gridProjectionY = GridField.allocate(gridStorage, lx * ly);
+    this.gridProjectionXSwapper = GridField.allocate(gridStorage, lx * ly);
+    this.gridProjectionYSwapper = GridField.allocate(gridStorage, lx * ly);
+    this.eulerX = GridField.allocate(gridStorage, lx * ly);
+    this.eulerY = GridField.allocate(gridStorage, lx * ly);
+    this.midpointX = GridField.allocate(gridStorage, lx * ly);
+    this.midpointY = GridField.allocate(gridStorage, lx * ly);
+    this.interpolatedSpeedX = GridField.allocate(gridStorage, lx * ly);
+    this.interpolatedSpeedY = GridField.allocate(gridStorage, lx * ly);
+    this.interpolatedHalfSpeedX = GridField.allocate(gridStorage, lx * ly);
+    this.interpolatedHalfSpeedY = GridField.allocate(gridStorage, lx * ly);
     this.rhoInit = new double[lx * ly];
     this.rhoFt = new double[lx * ly];
-    this.gridIndexToRegionIndex = new int[lx][ly];
-    this.gridFluxInitX = fftPlanFactory.createDCT3_DST3_2D(lx, ly);
-    this.gridFluxInitY = fftPlanFactory.createDST3_DCT3_2D(lx, ly);
+    this.gridIndexToRegionIndex = useRegionRuns ? null : new int[lx * ly];
     this.rho = fftPlanFactory.createDCT2_2D(lx, ly, rhoInit, rhoFt);
+    this.rhoBackward = fftPlanFactory.createDCT3_2D(lx, ly, rhoFt, rhoInit);
+    this.spectralKernels = new SpectralKernels(lx, ly);
+    double[] fluxX = new double[lx * ly];
+    double[] fluxY = new double[lx * ly];
+    this.gridFluxInitX = SpectralConvolution2D.ofSpectrum(
+      fftPlanFactory.createDCT3_DST3_2D(lx, ly).getTransform(), spectralKernels.getFluxX(), rhoFt, fluxX);
+    this.gridFluxInitY = SpectralConvolution2D.ofSpectrum(
+      fftPlanFactory.createDST3_DCT3_2D(lx, ly).getTransform(), spectralKernels.getFluxY(), rhoFt, fluxY);
+    reset();
+    setInitialTransformation(initialDeltaX, initialDeltaY, initialScalingFactor);
   }
 
-  private static double[] initEmptyProjection(int lx, int ly) {
-    double[] projection = new double[lx * ly];
-    Arrays.fill(projection, Double.NaN);
-    return projection;
+  /**
+   * Prepares the grid for a new calculation as if it was newly created. Fields that every calculation
+   * overwrites before reading them are left as they are.
+   */
+  public void reset() {
+    initProjectionOnGrid(lx, ly, gridProjectionX, gridProjectionY);
+    gridProjectionXSwapper.fill(Double.NaN);
+    gridProjectionYSwapper.fill(Double.NaN);
+    regionsOverlapInGrid = false;
+    regionRuns = null;
   }
 
-  private static double[] initProjectionXOnGrid(int lx, int ly) {
-    double[] projection = new double[lx * ly];
-    for (int i = 0; i < lx; i++) {
-      for (int j = 0; j < ly; j++) {
-        projection[i * ly + j] = i + 0.5;
-      }
+  /**
+   * Sets how the L-space of this grid was derived from the coordinates of the original map: A point (x,y)
+   * of the map is at ((x-initialDeltaX)/initialScalingFactor, (y-initialDeltaY)/initialScalingFactor).
+   */
+  public void setInitialTransformation(double initialDeltaX, double initialDeltaY, double initialScalingFactor) {
+    this.initialDeltaX = initialDeltaX;
+    this.initialDeltaY = initialDeltaY;
+    this.initialScalingFactor = initialScalingFactor;
+  }
+
+  /**
+   * @return True if this grid was created with the given plan factory, storage, size and region storage, so it can be reused
+   * for a calculation that would create such a grid.
+   */
+  public boolean matches(FftPlanFactory fftPlanFactory, GridStorage gridStorage, int lx, int ly, boolean useRegionRuns) {
+    return this.fftPlanFactory == fftPlanFactory
+      && this.gridStorage.isOffHeap() == gridStorage.isOffHeap()
+      && this.lx == lx
+      && this.ly == ly
+      && isUseRegionRuns() == useRegionRuns;
+  }
+
+  /**
+   * @return The approximate amount of bytes held by this grid's fields, including off-heap fields.
+   */
+  public long getRetainedBytes() {
+    long cells = (long) lx * ly;
+    // speed, projection, swapper and scratch fields, rho and its transform and both flux fields
+    long bytes = 18 * cells * Double.BYTES;
+    if (gridIndexToRegionIndex != null) {
+      bytes += cells * Integer.BYTES;
     }
-    return projection;
+    return bytes + spectralKernels.getRetainedBytes();
   }
 
-  private static double[] initProjectionYOnGrid(int lx, int ly) {
-    double[] proj = new double[lx * ly];
+  /**
+   * Sets the projection of each cell to the cell's center, which is the identity projection.
+   */
+  public static void initProjectionOnGrid(int lx, int ly, GridField projectionX, GridField projectionY) {
     for (int i = 0; i < lx; i++) {
       for (int j = 0; j < ly; j++) {
-        proj[i * ly + j] = j + 0.5;
+        projectionX.set(i * ly + j, i + 0.5);
+        projectionY.set(i * ly + j, j + 0.5);
       }
     }
-    return proj;
   }
 
   public double getInitialDeltaX() {
@@ -84,11 +154,11 @@ public class MapGrid {
     return initialScalingFactor;
   }
 
-  public double[] getGridSpeedX() {
+  public GridField getGridSpeedX() {
     return gridSpeedX;
   }
 
-  public double[] getGridSpeedY() {
+  public GridField getGridSpeedY() {
     return gridSpeedY;
   }
 
@@ -104,22 +174,70 @@ public class MapGrid {
     return absoluteTolerance;
   }
 
-  public double[] getGridProjectionX() {
+  public GridField getGridProjectionX() {
     return gridProjectionX;
   }
 
-  public double[] getGridProjectionY() {
+  public GridField getGridProjectionY() {
     return gridProjectionY;
   }
 
-  public double[] getGridProjectionXSwapper() {
+  public GridField getGridProjectionXSwapper() {
     return gridProjectionXSwapper;
   }
 
-  public double[] getGridProjectionYSwapper() {
+  public GridField getGridProjectionYSwapper() {
     return gridProjectionYSwapper;
   }
 
+  public GridField getEulerX() {
+    return eulerX;
+  }
+
+  public GridField getEulerY() {
+    return eulerY;
+  }
+
+  public GridField getMidpointX() {
+    return midpointX;
+  }
+
+  public GridField getMidpointY() {
+    return midpointY;
+  }
+
+  public GridField getInterpolatedSpeedX() {
+    return interpolatedSpeedX;
+  }
+
+  public GridField getInterpolatedSpeedY() {
+    return interpolatedSpeedY;
+  }
+
+  public GridField getInterpolatedHalfSpeedX() {
+    return interpolatedHalfSpeedX;
+  }
+
+  public GridField getInterpolatedHalfSpeedY() {
+    return interpolatedHalfSpeedY;
+  }
+
+  /**
+   * @return The displacement of each cell by the projection, only valid outside of the integration as it shares its
+   * field with {@link #getEulerX()}.
+   */
+  public GridField getDisplacementX() {
+    return eulerX;
+  }
+
+  /**
+   * @return The displacement of each cell by the projection, only valid outside of the integration as it shares its
+   * field with {@link #getEulerY()}.
+   */
+  public GridField getDisplacementY() {
+    return eulerY;
+  }
+
   public double[] getRhoFt() {
     return rhoFt;
   }
@@ -128,19 +246,94 @@ public class MapGrid {
     return rhoInit;
   }
 
-  public int[][] getGridIndexToRegionIndex() {
+  public int[] getGridIndexToRegionIndex() {
     return gridIndexToRegionIndex;
   }
 
-  public FftPlan2D getGridFluxInitX() {
+  /**
+   * @return True if the last rasterization into gridIndexToRegionIndex found cells covered by more than one region.
+   * Such a grid can not be updated incrementally.
+   */
+  public boolean isRegionsOverlapInGrid() {
+    return regionsOverlapInGrid;
+  }
+
+  public void setRegionsOverlapInGrid(boolean regionsOverlapInGrid) {
+    this.regionsOverlapInGrid = regionsOverlapInGrid;
+  }
+
+  public boolean isUseRegionRuns() {
+    return gridIndexToRegionIndex == null;
+  }
+
+  public RegionRuns getRegionRuns() {
+    return regionRuns;
+  }
+
+  public void setRegionRuns(RegionRuns regionRuns) {
+    this.regionRuns = regionRuns;
+  }
+
+  /**
+   * @return The convolution of rhoFt into the initial flux in x direction, rhoFt is not modified.
+   */
+  public SpectralConvolution2D getGridFluxInitX() {
     return gridFluxInitX;
   }
 
-  public FftPlan2D getGridFluxInitY() {
+  /**
+   * @return The convolution of rhoFt into the initial flux in y direction, rhoFt is not modified.
+   */
+  public SpectralConvolution2D getGridFluxInitY() {
     return gridFluxInitY;
   }
 
   public FftPlan2D getRho() {
     return rho;
   }
+
+  /**
+   * @return The inverse (up to scaling) of {@link #getRho()}, transforming rhoFt back into rhoInit.
+   */
+  public FftPlan2D getRhoBackward() {
+    return rhoBackward;
+  }
+
+  /**
+   * @return The convolution that blurs rhoInit in place with a gaussian of the given width. The spectrum is only kept
+   * in the buffers of the executing threads, so rhoFt is not modified and needs to be updated by {@link #getRho()}
+   * afterwards.
+   */
+  public SpectralConvolution2D getGaussianBlur(double width) {
+    if (width != gaussianBlurWidth) {
+      gaussianBlur = SpectralConvolution2D.of(rho.getTransform(), rhoBackward.getTransform(),
+        spectralKernels.createGaussianBlur(width), rhoInit, rhoInit);
+      gaussianBlurWidth = width;
+    }
+    return gaussianBlur;
+  }
+
+  public GridStorage getGridStorage() {
+    return gridStorage;
+  }
+
+  /**
+   * Frees the memory of the grid fields that are not stored on the heap. The grid must not be used afterwards.
+   */
+  public void release() {
+    gridSpeedX.release();
+    gridSpeedY.release();
+    gridProjectionX.release();
+    gridProjectionY.release();
+    gridProjectionXSwapper.release();
+    gridProjectionYSwapper.release();
+    eulerX.release();
+    eulerY.release();
+    midpointX.release();
+    midpointY.release();
+    interpolatedSpeedX.release();
+    interpolatedSpeedY.release();
+    interpolatedHalfSpeedX.release();
+    interpolatedHalfSpeedY.release();
+  }
 }
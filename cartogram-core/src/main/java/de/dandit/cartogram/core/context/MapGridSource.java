@@ -0,0 +1,15 @@
+package de.dandit.cartogram.core.context;
+
+/**
+ * Provides the grid of a calculation, either newly created or reused from an earlier calculation.
+ */
+@FunctionalInterface
+public interface MapGridSource {
+
+  /**
+   * @return A grid of the given size and region storage with the given initial transformation, see
+   * {@link MapGrid#setInitialTransformation(double, double, double)}.
+   */
+  MapGrid lease(int lx, int ly, double initialDeltaX, double initialDeltaY, double initialScalingFactor,
+                boolean useRegionRuns);
+}
@@ -0,0 +1,86 @@
+package de.dandit.cartogram.core.context;
+
+import java.util.Arrays;
+
+/**
+ * The coordinates of all rings packed into one contiguous array per axis. The points of ring r have the
+ * indices {@link #getRingStart(int)} (inclusive) to {@link #getRingEnd(int)} (exclusive). The last point of a ring
+ * is not required to repeat the first point.
+ */
+public class PackedRings {
+  private final int[] ringOffset; // ring r has the points ringOffset[r] to ringOffset[r+1]-1
+  private final double[] x;
+  private final double[] y;
+
+  public PackedRings(int[] ringOffset, double[] x, double[] y) {
+    this.ringOffset = ringOffset;
+    this.x = x;
+    this.y = y;
+  }
+
+  public static PackedRings pack(double[][] ringsX, double[][] ringsY) {
+    int[] ringOffset = new int[ringsX.length + 1];
+    for (int ring = 0; ring < ringsX.length; ring++) {
+      ringOffset[ring + 1] = ringOffset[ring] + ringsX[ring].length;
+    }
+    double[] x = new double[ringOffset[ringsX.length]];
+    double[] y = new double[ringOffset[ringsX.length]];
+    for (int ring = 0; ring < ringsX.length; ring++) {
+      System.arraycopy(ringsX[ring], 0, x, ringOffset[ring], ringsX[ring].length);
+      System.arraycopy(ringsY[ring], 0, y, ringOffset[ring], ringsY[ring].length);
+    }
+    return new PackedRings(ringOffset, x, y);
+  }
+
+  /**
+   * @return Rings with the same amount of points per ring, all coordinates are NaN.
+   */
+  public PackedRings createEmptyCopy() {
+    double[] emptyX = new double[x.length];
+    double[] emptyY = new double[y.length];
+    Arrays.fill(emptyX, Double.NaN);
+    Arrays.fill(emptyY, Double.NaN);
+    return new PackedRings(ringOffset, emptyX, emptyY);
+  }
+
+  public void copyFrom(PackedRings other) {
+    System.arraycopy(other.x, 0, x, 0, x.length);
+    System.arraycopy(other.y, 0, y, 0, y.length);
+  }
+
+  public double[] copyRingX(int ring) {
+    return Arrays.copyOfRange(x, ringOffset[ring], ringOffset[ring + 1]);
+  }
+
+  public double[] copyRingY(int ring) {
+    return Arrays.copyOfRange(y, ringOffset[ring], ringOffset[ring + 1]);
+  }
+
+  public int getRingCount() {
+    return ringOffset.length - 1;
+  }
+
+  public int getPointCount() {
+    return x.length;
+  }
+
+  public int getRingStart(int ring) {
+    return ringOffset[ring];
+  }
+
+  public int getRingEnd(int ring) {
+    return ringOffset[ring + 1];
+  }
+
+  public int[] getRingOffset() {
+    return ringOffset;
+  }
+
+  public double[] getX() {
+    return x;
+  }
+
+  public double[] getY() {
+    return y;
+  }
+}
@@ -1,24 +1,18 @@
 package de.dandit.cartogram.core.context;
 
 public class PolygonData {
-  private final double[][] polygonRingsX;
-  private final double[][] polygonRingsY;
+  private final PackedRings polygonRings;
   private final int[] regionIdByRing;
   private final int[][] ringsInPolygonByRegion;
 
-  public PolygonData(double[][] polygonRingsX, double[][] polygonRingsY, int[] regionIdByRing, int[][] ringsInPolygonByRegion) {
-    this.polygonRingsX = polygonRingsX;
-    this.polygonRingsY = polygonRingsY;
+  public PolygonData(PackedRings polygonRings, int[] regionIdByRing, int[][] ringsInPolygonByRegion) {
+    this.polygonRings = polygonRings;
     this.regionIdByRing = regionIdByRing;
     this.ringsInPolygonByRegion = ringsInPolygonByRegion;
   }
 
-  public double[][] getPolygonRingsX() {
-    return polygonRingsX;
-  }
-
-  public double[][] getPolygonRingsY() {
-    return polygonRingsY;
+  public PackedRings getPolygonRings() {
+    return polygonRings;
   }
 
   public int[] getRegionIdByRing() {
@@ -13,10 +13,12 @@ public class RegionData {
   private final double[] regionPerimeter;
   private final int[][] ringInRegion;
   private final double[] targetArea;
-  private final double[][] ringsX;
-  private final double[][] ringsY;
-  private final double[][] cartogramRingsX;
-  private final double[][] cartogramRingsY;
+  // double buffered: the projection reads the rings and writes the cartogram rings, then both are swapped
+  private PackedRings rings;
+  private PackedRings cartogramRings;
+  // the oriented area of each ring, buffered and swapped together with the rings
+  private double[] ringArea;
+  private double[] cartogramRingArea;
 
   /*
    * Describes a mapping to know if the ring with a given index is A) an exterior or interior ring
@@ -25,9 +27,8 @@ public class RegionData {
    */
   private final int[][] ringsInPolygonByRegion;
 
-  public RegionData(int[] regionIdByRing, double[][] ringsX, double[][] ringsY, int[][] ringsInPolygonByRegion) {
-    this.ringsX = ringsX;
-    this.ringsY = ringsY;
+  public RegionData(int[] regionIdByRing, PackedRings rings, int[][] ringsInPolygonByRegion) {
+    this.rings = rings;
     this.ringsInPolygonByRegion = Arrays.stream(ringsInPolygonByRegion)
       .filter(r -> r.length > 0)
       .toArray(int[][]::new);
@@ -45,18 +46,9 @@ public class RegionData {
     this.regionPerimeter = new double[regionsCount];
     this.ringInRegion = initPolygonInRegions(regionIdInv, regionId, regionIdByRing);
     this.targetArea = new double[regionsCount];
-    this.cartogramRingsX = initEmptyCartogramRings(ringsX);
-    this.cartogramRingsY = initEmptyCartogramRings(ringsX);
-  }
-
-  private static double[][] initEmptyCartogramRings(double[][] rings) {
-    int ringCount = rings.length;
-    double[][] cartogramRings = new double[ringCount][];
-    for (int i = 0; i < ringCount; i++) {
-      cartogramRings[i] = new double[rings[i].length];
-      Arrays.fill(cartogramRings[i], Double.NaN);
-    }
-    return cartogramRings;
+    this.cartogramRings = rings.createEmptyCopy();
+    this.ringArea = new double[rings.getRingCount()];
+    this.cartogramRingArea = new double[rings.getRingCount()];
   }
 
   private static int regionIdToIndex(Map<Integer, Integer> regionIdInverse, int id) {
@@ -99,12 +91,8 @@ public class RegionData {
     return ringsInRegion;
   }
 
-  public double[][] getRingsX() {
-    return ringsX;
-  }
-
-  public double[][] getRingsY() {
-    return ringsY;
+  public PackedRings getRings() {
+    return rings;
   }
 
   public int[] getRegionId() {
@@ -127,12 +115,35 @@ public class RegionData {
     return targetArea;
   }
 
-  public double[][] getCartogramRingsX() {
-    return cartogramRingsX;
+  public PackedRings getCartogramRings() {
+    return cartogramRings;
+  }
+
+  /**
+   * @return The oriented area of each of the rings, only valid after it got calculated for the current rings.
+   */
+  public double[] getRingArea() {
+    return ringArea;
   }
 
-  public double[][] getCartogramRingsY() {
-    return cartogramRingsY;
+  /**
+   * @return The oriented area of each of the cartogram rings, calculated when they get projected.
+   */
+  public double[] getCartogramRingArea() {
+    return cartogramRingArea;
+  }
+
+  /**
+   * Makes the cartogram rings the current rings. The buffer of the previous rings becomes the
+   * cartogram rings and is overwritten by the next projection.
+   */
+  public void swapRings() {
+    PackedRings previousRings = rings;
+    rings = cartogramRings;
+    cartogramRings = previousRings;
+    double[] previousRingArea = ringArea;
+    ringArea = cartogramRingArea;
+    cartogramRingArea = previousRingArea;
   }
 
   public int[][] getRingsInPolygonByRegion() {
@@ -0,0 +1,69 @@
+package de.dandit.cartogram.core.context;
+
+/**
+ * Run-length encoded alternative to the dense region index grid of a {@link MapGrid}: For each grid row y
+ * it stores the maximal runs of cells that have the same region index, ordered by x. Cells outside of all runs are
+ * outside of all regions (region index -1). As regions are mostly large connected areas this needs a small
+ * fraction of the memory of the dense grid for large grids.
+ */
+public class RegionRuns {
+  private final int lx;
+  private final int ly;
+  private final int[] rowOffset; // the runs of row y have the indices rowOffset[y] to rowOffset[y+1]-1
+  private final int[] runStart; // x of the first cell of the run
+  private final int[] runEnd; // x of the first cell after the run
+  private final int[] runRegionIndex;
+
+  public RegionRuns(int lx, int ly, int[] rowOffset, int[] runStart, int[] runEnd, int[] runRegionIndex) {
+    this.lx = lx;
+    this.ly = ly;
+    this.rowOffset = rowOffset;
+    this.runStart = runStart;
+    this.runEnd = runEnd;
+    this.runRegionIndex = runRegionIndex;
+  }
+
+  public int getRegionIndex(int x, int y) {
+    int low = rowOffset[y];
+    int high = rowOffset[y + 1] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (runEnd[mid] <= x) {
+        low = mid + 1;
+      } else if (runStart[mid] > x) {
+        high = mid - 1;
+      } else {
+        return runRegionIndex[mid];
+      }
+    }
+    return -1;
+  }
+
+  public int getLx() {
+    return lx;
+  }
+
+  public int getLy() {
+    return ly;
+  }
+
+  public int getRunCount() {
+    return rowOffset[ly];
+  }
+
+  public int[] getRowOffset() {
+    return rowOffset;
+  }
+
+  public int[] getRunStart() {
+    return runStart;
+  }
+
+  public int[] getRunEnd() {
+    return runEnd;
+  }
+
+  public int[] getRunRegionIndex() {
+    return runRegionIndex;
+  }
+}
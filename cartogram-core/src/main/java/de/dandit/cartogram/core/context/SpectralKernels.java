@@ -0,0 +1,77 @@
+package de.dandit.cartogram.core.context;
+
+import de.dandit.cartogram.core.dft.SpectralKernel;
+
+/**
+ * The factors that the fourier transformed density of a {@link MapGrid} is multiplied with. They only depend on the
+ * size of the grid, so they are calculated once per grid instead of once per cell and calculation.
+ * All kernels include the normalization 1/(4*lx*ly) of the unnormalized forward and inverse transforms.
+ */
+public class SpectralKernels {
+  private final int lx;
+  private final int ly;
+  private final SpectralKernel fluxX; // the x flux at (i,j) is rhoFt[(i+1)*ly+j] times the factor at (i,j)
+  private final SpectralKernel fluxY; // the y flux at (i,j) is rhoFt[i*ly+j+1] times the factor at (i,j)
+
+  public SpectralKernels(int lx, int ly) {
+    this.lx = lx;
+    this.ly = ly;
+    double normalization = 4. * lx * ly;
+    double[] fluxX = new double[lx * ly];
+    double[] fluxY = new double[lx * ly];
+    for (int i = 0; i < lx - 1; i++) {
+      for (int j = 0; j < ly; j++) {
+        fluxX[i * ly + j] =
+            -1. / (normalization * Math.PI * (((double) i + 1) / (double) lx + (j / ((double) i + 1))
+                * (j / (double) ly)
+                * ((double) lx / (double) ly)));
+      }
+    }
+    for (int i = 0; i < lx; i++) {
+      for (int j = 0; j < ly - 1; j++) {
+        fluxY[i * ly + j] =
+            -1. / (normalization * Math.PI * (((double) i / (j + 1)) * ((double) i / (double) lx) * ((double) ly / (double) lx)
+                + (j + 1) / (double) ly));
+      }
+    }
+    this.fluxX = SpectralKernel.ofValues(lx, ly, fluxX).withShift(1, 0);
+    this.fluxY = SpectralKernel.ofValues(lx, ly, fluxY).withShift(0, 1);
+  }
+
+  /**
+   * @return The kernel of the x flux, 0 for the last column which has no successor in x direction.
+   */
+  public SpectralKernel getFluxX() {
+    return fluxX;
+  }
+
+  /**
+   * @return The kernel of the y flux, 0 for the last row which has no successor in y direction.
+   */
+  public SpectralKernel getFluxY() {
+    return fluxY;
+  }
+
+  /**
+   * @return The gaussian kernel of the given width, which is separable: exp(a+b) = exp(a)*exp(b).
+   */
+  public SpectralKernel createGaussianBlur(double width) {
+    double scale = -0.5 * width * width * Math.PI * Math.PI;
+    double normalization = 4. * lx * ly;
+    double[] blurX = new double[lx];
+    for (int i = 0; i < lx; i++) {
+      double scaleI = (double) i / lx;
+      blurX[i] = Math.exp(scale * scaleI * scaleI) / normalization;
+    }
+    double[] blurY = new double[ly];
+    for (int j = 0; j < ly; j++) {
+      double scaleJ = (double) j / ly;
+      blurY[j] = Math.exp(scale * scaleJ * scaleJ);
+    }
+    return SpectralKernel.ofSeparable(blurX, blurY);
+  }
+
+  public long getRetainedBytes() {
+    return 2L * lx * ly * Double.BYTES;
+  }
+}
@@ -0,0 +1,19 @@
+package de.dandit.cartogram.core.dft;
+
+/**
+ * Like the {@link InPlaceDftAlgorithm}, but transforms several vectors of the same length at once. The vectors are
+ * interleaved, element i of vector b is at index i * batch + b, so the innermost loops of the algorithm run over
+ * independent vectors and a single vector no longer forms one long chain of dependent operations.
+ */
+public interface BatchedDftAlgorithm {
+
+  /**
+   * Executes the algorithm by transforming the interleaved input data in place.
+   * @param data The interleaved input data of at least tables.getLength() * batch elements that will be modified in the
+   *             process to later hold the result.
+   * @param batch The amount of vectors.
+   * @param tables The twiddle factors for the length of a single vector.
+   * @param scratch A buffer as long as the data that the algorithm may overwrite, owned by the executing thread.
+   */
+  void execute(double[] data, int batch, DftTables tables, double[] scratch);
+}
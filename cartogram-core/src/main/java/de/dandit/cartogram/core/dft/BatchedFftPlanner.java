@@ -0,0 +1,37 @@
+package de.dandit.cartogram.core.dft;
+
+import de.dandit.cartogram.core.api.Fft2DPlanner;
+import de.dandit.cartogram.core.api.ParallelismConfig;
+
+/**
+ * Plans the same transforms as the {@link Radix4FftPlanner} with identical results, but transforms blocks of rows
+ * respectively columns together with {@link BatchedDftAlgorithm}s.
+ */
+public class BatchedFftPlanner implements Fft2DPlanner {
+
+  private final ParallelismConfig parallelismConfig;
+
+  public BatchedFftPlanner(ParallelismConfig parallelismConfig) {
+    this.parallelismConfig = parallelismConfig;
+  }
+
+  @Override
+  public FftPlan2D createDCT2_2D(int width, int height, double[] inputData, double[] outputData) {
+    return FftPlan2D.ofBatched(parallelismConfig, width, height, inputData, outputData, RealDCT::transformBatch, RealDCT::transformBatch);
+  }
+
+  @Override
+  public FftPlan2D createDCT3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return FftPlan2D.ofBatched(parallelismConfig, width, height, inputData, outputData, RealDCT::inverseTransformBatch, RealDCT::inverseTransformBatch);
+  }
+
+  @Override
+  public FftPlan2D createDCT3_DST3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return FftPlan2D.ofBatched(parallelismConfig, width, height, inputData, outputData, DST::inverseTransformBatch, RealDCT::inverseTransformBatch);
+  }
+
+  @Override
+  public FftPlan2D createDST3_DCT3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return FftPlan2D.ofBatched(parallelismConfig, width, height, inputData, outputData, RealDCT::inverseTransformBatch, DST::inverseTransformBatch);
+  }
+}
@@ -37,13 +37,15 @@ public final class DCT {
    * Wikipedia: Discrete cosine transform - DCT-II</a>.</p>
    *
    * @param vector the vector of numbers to transform
+   * @param tables the twiddle factors for the length of the vector
+   * @param scratch a buffer as long as the vector, its content is overwritten
    * @throws NullPointerException if the array is {@code null}
    */
-  public static void transform(double[] vector, double[] cosTable, double[] sinTable) {
+  public static void transform(double[] vector, DftTables tables, double[] scratch) {
     Objects.requireNonNull(vector);
     int len = vector.length;
     int halfLen = len / 2;
-    double[] real = new double[len];
+    double[] real = scratch;
     for (int i = 0; i < halfLen; i++) {
       real[i] = vector[i * 2];
       real[len - 1 - i] = vector[i * 2 + 1];
@@ -51,13 +53,11 @@ public final class DCT {
     if (len % 2 == 1)
       real[halfLen] = vector[len - 1];
     Arrays.fill(vector, 0.0);
-    Fft.transform(real, vector, cosTable, sinTable);
+    Fft.transform(real, vector, tables.getCosTable(), tables.getSinTable());
+    double[] shiftCos = tables.getShiftCosTable();
+    double[] shiftSin = tables.getShiftSinTable();
     for (int i = 0; i < len; i++) {
-      double temp = i * Math.PI / (len * 2);
-      vector[i] = real[i] * Math.cos(temp) + vector[i] * Math.sin(temp);
-    }
-    for (int i = 0; i < len; i++) {
-      vector[i] *= 2;
+      vector[i] = (real[i] * shiftCos[i] + vector[i] * shiftSin[i]) * 2;
     }
   }
 
@@ -69,33 +69,33 @@ public final class DCT {
    * Wikipedia: Discrete cosine transform - DCT-III</a>.</p>
    *
    * @param vector the vector of numbers to transform
+   * @param tables the twiddle factors for the length of the vector
+   * @param scratch a buffer as long as the vector, its content is overwritten
    * @throws NullPointerException if the array is {@code null}
    */
-  public static void inverseTransform(double[] vector, double[] cosTable, double[] sinTable) {
+  public static void inverseTransform(double[] vector, DftTables tables, double[] scratch) {
     // Compute for k=0..vector.length and store in vector[k]: (input X, output Y)
     // Y_k = X_0 + 2 * \sum_{j=1}^{n-1}X_j\cos[\pi j(k+1/2)/n]
     Objects.requireNonNull(vector);
     int len = vector.length;
     if (len > 0)
       vector[0] /= 2;
-    double[] real = new double[len];
+    double[] real = scratch;
+    double[] shiftCos = tables.getShiftCosTable();
+    double[] shiftSin = tables.getShiftSinTable();
     for (int i = 0; i < len; i++) {
-      double temp = i * Math.PI / (len * 2);
-      real[i] = vector[i] * Math.cos(temp);
-      vector[i] *= -Math.sin(temp);
+      real[i] = vector[i] * shiftCos[i];
+      vector[i] *= -shiftSin[i];
     }
-    Fft.transform(real, vector, cosTable, sinTable);
+    Fft.transform(real, vector, tables.getCosTable(), tables.getSinTable());
 
     int halfLen = len / 2;
     for (int i = 0; i < halfLen; i++) {
-      vector[i * 2] = real[i];
-      vector[i * 2 + 1] = real[len - 1 - i];
+      vector[i * 2] = real[i] * 2;
+      vector[i * 2 + 1] = real[len - 1 - i] * 2;
     }
     if (len % 2 == 1)
-      vector[len - 1] = real[halfLen];
-    for (int i = 0; i < len; i++) {
-      vector[i] *= 2;
-    }
+      vector[len - 1] = real[halfLen] * 2;
   }
 
 }
\ No newline at end of file
@@ -6,7 +6,40 @@ package de.dandit.cartogram.core.dft;
  */
 public class DST {
 
-  public static void inverseTransform(double[] vector, double[] cosTable, double[] sinTable) {
+  public static void inverseTransform(double[] vector, DftTables tables, double[] scratch) {
+    inverseTransform(vector, tables, scratch, RealDCT::inverseTransform);
+  }
+
+  public static void inverseTransformRadix4(double[] vector, DftTables tables, double[] scratch) {
+    inverseTransform(vector, tables, scratch, RealDCT::inverseTransformRadix4);
+  }
+
+  /**
+   * Computes the DST type III of batch interleaved vectors in place, see {@link BatchedDftAlgorithm}.
+   */
+  public static void inverseTransformBatch(double[] data, int batch, DftTables tables, double[] scratch) {
+    int len = tables.getLength();
+    // revert order of input
+    for (int i = 0; i < len / 2; i++) {
+      int a = i * batch;
+      int c = (len - i - 1) * batch;
+      for (int b = 0; b < batch; b++) {
+        double temp = data[a + b];
+        data[a + b] = data[c + b];
+        data[c + b] = temp;
+      }
+    }
+    RealDCT.inverseTransformBatch(data, batch, tables, scratch);
+    // flip sign of every other output
+    for (int i = 1; i < len; i += 2) {
+      int a = i * batch;
+      for (int b = 0; b < batch; b++) {
+        data[a + b] *= -1;
+      }
+    }
+  }
+
+  private static void inverseTransform(double[] vector, DftTables tables, double[] scratch, InPlaceDftAlgorithm dct3) {
     int len = vector.length;
     // revert order of input
     for (int i = 0; i < len / 2; i++) {
@@ -14,7 +47,7 @@ public class DST {
       vector[i] = vector[len - i - 1];
       vector[len - i - 1] = temp;
     }
-    DCT.inverseTransform(vector, cosTable, sinTable);
+    dct3.execute(vector, tables, scratch);
     // flip sign of every other output
     for (int i = 1; i < len; i+=2) {
       vector[i] *= -1;
@@ -0,0 +1,60 @@
+package de.dandit.cartogram.core.dft;
+
+/**
+ * The twiddle factors of all transforms of one length, calculated once per plan so that executing a transform
+ * needs no trigonometric functions.
+ */
+public final class DftTables {
+  private final int length;
+  private final double[] cosTable; // cos(2 * PI * i / n) for i < n/2, the factors of the FFT
+  private final double[] sinTable; // sin(2 * PI * i / n) for i < n/2
+  private final double[] shiftCosTable; // cos(i * PI / (2 * n)) for i < n, pre and post processing of DCT and DST
+  private final double[] shiftSinTable; // sin(i * PI / (2 * n)) for i < n
+  private final Radix4Fft halfLengthFft; // the complex FFT that real input of length n is packed into
+
+  private DftTables(int length) {
+    this.length = length;
+    this.cosTable = new double[length / 2];
+    this.sinTable = new double[length / 2];
+    for (int i = 0; i < length / 2; i++) {
+      cosTable[i] = Math.cos(2 * Math.PI * i / length);
+      sinTable[i] = Math.sin(2 * Math.PI * i / length);
+    }
+    this.shiftCosTable = new double[length];
+    this.shiftSinTable = new double[length];
+    for (int i = 0; i < length; i++) {
+      double temp = i * Math.PI / (length * 2);
+      shiftCosTable[i] = Math.cos(temp);
+      shiftSinTable[i] = Math.sin(temp);
+    }
+    this.halfLengthFft = Radix4Fft.of(Math.max(1, length / 2));
+  }
+
+  public static DftTables of(int length) {
+    return new DftTables(length);
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public double[] getCosTable() {
+    return cosTable;
+  }
+
+  public double[] getSinTable() {
+    return sinTable;
+  }
+
+  public double[] getShiftCosTable() {
+    return shiftCosTable;
+  }
+
+  public double[] getShiftSinTable() {
+    return shiftSinTable;
+  }
+
+  public Radix4Fft getHalfLengthFft() {
+    return halfLengthFft;
+  }
+}
@@ -47,10 +47,18 @@ public final class Fft {
    * The vector's length must be a power of 2. Uses the Cooley-Tukey decimation-in-time radix-2 algorithm.
    */
   public static void transformRadix2(double[] real, double[] imag, double[] cosTable, double[] sinTable) {
-    // Length variables
-    int n = real.length;
-    if (n != imag.length)
+    if (real.length != imag.length)
       throw new IllegalArgumentException("Mismatched lengths");
+    transformRadix2(real, 0, imag, 0, real.length, cosTable, sinTable, 1);
+  }
+
+  /*
+   * Computes the DFT of the n complex values starting at the given offsets in place. The vector's length must be a
+   * power of 2. The tables hold the twiddle factors of a transform tableStride times as long, so the transforms of
+   * half length that real input is packed into can use the tables of the full length.
+   */
+  public static void transformRadix2(double[] real, int realOffset, double[] imag, int imagOffset, int n,
+                                     double[] cosTable, double[] sinTable, int tableStride) {
     int levels = 31 - Integer.numberOfLeadingZeros(n);  // Equal to floor(log2(n))
     if (1 << levels != n)
       throw new IllegalArgumentException("Length is not a power of 2");
@@ -59,32 +67,34 @@ public final class Fft {
     for (int i = 0; i < n; i++) {
       int j = Integer.reverse(i) >>> (32 - levels);
       if (j > i) {
-        double temp = real[i];
-        real[i] = real[j];
-        real[j] = temp;
-        temp = imag[i];
-        imag[i] = imag[j];
-        imag[j] = temp;
+        double temp = real[realOffset + i];
+        real[realOffset + i] = real[realOffset + j];
+        real[realOffset + j] = temp;
+        temp = imag[imagOffset + i];
+        imag[imagOffset + i] = imag[imagOffset + j];
+        imag[imagOffset + j] = temp;
       }
     }
 
     // Cooley-Tukey decimation-in-time radix-2 FFT
     for (int size = 2; size <= n; size *= 2) {
       int halfsize = size / 2;
-      int tablestep = n / size;
+      int tablestep = n / size * tableStride;
       for (int i = 0; i < n; i += size) {
         for (int j = i, k = 0; j < i + halfsize; j++, k += tablestep) {
           int l = j + halfsize;
-          double tpre = real[l] * cosTable[k] + imag[l] * sinTable[k];
-          double tpim = -real[l] * sinTable[k] + imag[l] * cosTable[k];
-          real[l] = real[j] - tpre;
-          imag[l] = imag[j] - tpim;
-          real[j] += tpre;
-          imag[j] += tpim;
+          double realL = real[realOffset + l];
+          double imagL = imag[imagOffset + l];
+          double tpre = realL * cosTable[k] + imagL * sinTable[k];
+          double tpim = -realL * sinTable[k] + imagL * cosTable[k];
+          real[realOffset + l] = real[realOffset + j] - tpre;
+          imag[imagOffset + l] = imag[imagOffset + j] - tpim;
+          real[realOffset + j] += tpre;
+          imag[imagOffset + j] += tpim;
         }
       }
       if (size == n)  // Prevent overflow in 'size *= 2'
         break;
     }
   }
-}
\ No newline at end of file
+}
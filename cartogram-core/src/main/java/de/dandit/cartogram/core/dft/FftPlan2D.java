@@ -4,19 +4,14 @@ import de.dandit.cartogram.core.api.ParallelismConfig;
 
 import java.util.stream.IntStream;
 
+/**
+ * A {@link FftTransform2D} bound to the data it transforms. Plans of the same type and size can share their
+ * transform, and with it the tables and buffers.
+ */
 public class FftPlan2D {
-
-  private final int width;
-  private final int height;
+  private final FftTransform2D transform;
   private final double[] inputTabularData; // column-major layout (so: first height elements are the first column)
   private final double[] outputTabularData; // column-major layout (so: first height elements are the first column)
-  private final double[] cosTableWidth;
-  private final double[] sinTableWidth;
-  private final double[] cosTableHeight;
-  private final double[] sinTableHeight;
-  private final InPlaceDftAlgorithm inplaceAlgorithmRows;
-  private final InPlaceDftAlgorithm inplaceAlgorithmColumns;
-  private final ParallelismConfig parallelismConfig;
 
   public FftPlan2D(
     ParallelismConfig parallelismConfig,
@@ -26,75 +21,90 @@ public class FftPlan2D {
     double[] outputTabularData,
     InPlaceDftAlgorithm inplaceAlgorithmRows,
     InPlaceDftAlgorithm inplaceAlgorithmColumns) {
-    this.parallelismConfig = parallelismConfig;
-    if (width * height != inputTabularData.length) {
+    this(FftTransform2D.of(parallelismConfig, width, height, inplaceAlgorithmRows, inplaceAlgorithmColumns),
+      inputTabularData, outputTabularData);
+  }
+
+  FftPlan2D(FftTransform2D transform, double[] inputTabularData, double[] outputTabularData) {
+    if (transform.getWidth() * transform.getHeight() != inputTabularData.length) {
       throw new IllegalArgumentException("Array size does not match width*height!");
     }
     if (inputTabularData.length != outputTabularData.length) {
       throw new IllegalArgumentException("Input array size does not match output array size");
     }
-    this.width = width;
-    this.height = height;
+    this.transform = transform;
     this.inputTabularData = inputTabularData;
     this.outputTabularData = outputTabularData;
-    this.inplaceAlgorithmRows = inplaceAlgorithmRows;
-    this.inplaceAlgorithmColumns = inplaceAlgorithmColumns;
-    this.cosTableWidth = initCosTable(width);
-    this.sinTableWidth = initSinTable(width);
-    this.cosTableHeight = width == height ? cosTableWidth : initCosTable(height);
-    this.sinTableHeight = width == height ? sinTableWidth : initSinTable(height);
   }
 
-  private static double[] initCosTable(int n) {
-    double[] cosTable = new double[n / 2];
-    for (int i = 0; i < n / 2; i++) {
-      cosTable[i] = Math.cos(2 * Math.PI * i / n);
+  /**
+   * Creates a plan that transforms blocks of rows respectively columns together with the given batched algorithms.
+   */
+  public static FftPlan2D ofBatched(
+    ParallelismConfig parallelismConfig,
+    int width,
+    int height,
+    double[] inputTabularData,
+    double[] outputTabularData,
+    BatchedDftAlgorithm batchedAlgorithmRows,
+    BatchedDftAlgorithm batchedAlgorithmColumns) {
+    return FftTransform2D.ofBatched(parallelismConfig, width, height, batchedAlgorithmRows, batchedAlgorithmColumns)
+      .bind(inputTabularData, outputTabularData);
+  }
+
+  public void execute() {
+    copyInput();
+    transform.execute(outputTabularData);
+  }
+
+  /**
+   * Executes the given independent plans, which must not share any output data. The row passes of all plans run
+   * together in one parallel pass and the column passes in a second one, so there is one join after the rows instead
+   * of one per plan and the tasks of small plans fill the cores together. The parallelism config of the first plan
+   * is used.
+   */
+  public static void executeAll(FftPlan2D... plans) {
+    if (plans.length == 0) {
+      return;
+    }
+    for (FftPlan2D plan : plans) {
+      plan.copyInput();
     }
-    return cosTable;
+    ParallelismConfig parallelismConfig = plans[0].transform.getParallelismConfig();
+    int[] rowTaskOffsets = new int[plans.length + 1];
+    int[] columnTaskOffsets = new int[plans.length + 1];
+    for (int i = 0; i < plans.length; i++) {
+      rowTaskOffsets[i + 1] = rowTaskOffsets[i] + plans[i].transform.getRowTaskCount();
+      columnTaskOffsets[i + 1] = columnTaskOffsets[i] + plans[i].transform.getColumnTaskCount();
+    }
+    parallelismConfig.apply(IntStream.range(0, rowTaskOffsets[plans.length]))
+        .forEach(task -> {
+          int i = planOfTask(rowTaskOffsets, task);
+          plans[i].transform.executeRowTask(task - rowTaskOffsets[i], plans[i].outputTabularData);
+        });
+    parallelismConfig.apply(IntStream.range(0, columnTaskOffsets[plans.length]))
+        .forEach(task -> {
+          int i = planOfTask(columnTaskOffsets, task);
+          plans[i].transform.executeColumnTask(task - columnTaskOffsets[i], plans[i].outputTabularData);
+        });
   }
 
-  private static double[] initSinTable(int n) {
-    double[] sinTable = new double[n / 2];
-    for (int i = 0; i < n / 2; i++) {
-      sinTable[i] = Math.sin(2 * Math.PI * i / n);
+  static int planOfTask(int[] taskOffsets, int task) {
+    int i = 0;
+    while (task >= taskOffsets[i + 1]) {
+      i++;
     }
-    return sinTable;
+    return i;
   }
 
-  public void execute() {
+  private void copyInput() {
     if (inputTabularData != outputTabularData) {
       System.arraycopy(inputTabularData, 0, outputTabularData, 0, inputTabularData.length);
     }
-    executePerRow();
-    executePerColumn();
   }
 
-  private void executePerColumn() {
-    parallelismConfig.apply(IntStream.range(0, width))
-        .forEach(col -> {
-          double[] heightBuffer = new double[height];
-          int indexOffset = col * height;
-          System.arraycopy(outputTabularData, indexOffset, heightBuffer, 0, heightBuffer.length);
-          inplaceAlgorithmColumns.execute(heightBuffer, cosTableHeight, sinTableHeight);
-          System.arraycopy(heightBuffer, 0, outputTabularData, indexOffset, heightBuffer.length);
-        });
-  }
-
-  private void executePerRow() {
-    parallelismConfig.apply(IntStream.range(0, height))
-        .forEach(row -> {
-          double[] widthBuffer = new double[width];
-          for (int col = 0; col < width; col++) {
-            widthBuffer[col] = outputTabularData[col * height + row];
-          }
-          inplaceAlgorithmRows.execute(
-              widthBuffer,
-              cosTableWidth,
-              sinTableWidth);
-          for (int col = 0; col < width; col++) {
-            outputTabularData[col * height + row] = widthBuffer[col];
-          }
-        });
+  public FftTransform2D getTransform() {
+    return transform;
   }
 
   public double[] getOutputData() {
@@ -0,0 +1,262 @@
+package de.dandit.cartogram.core.dft;
+
+import de.dandit.cartogram.core.api.ParallelismConfig;
+
+import java.util.stream.IntStream;
+
+/**
+ * The part of a {@link FftPlan2D} that does not depend on the data: the size, the 1D algorithms and their tables.
+ * A transform is immutable and can be executed by several threads on different data at the same time, so it can
+ * be shared by all plans of the same type and size. Use {@link #bind(double[], double[])} to get a plan for
+ * specific data.
+ */
+public final class FftTransform2D {
+  private static final int ROW_BLOCK = 16; // two cache lines of doubles per column and block
+  private static final int COLUMN_BLOCK = 16; // columns transformed together by batched algorithms
+
+  private final int width;
+  private final int height;
+  private final DftTables tablesWidth;
+  private final DftTables tablesHeight;
+  // buffers of the executing thread, so executing the transform does not allocate once each thread has its workspace
+  private final ThreadLocal<Workspace> workspace;
+  private final InPlaceDftAlgorithm inplaceAlgorithmRows;
+  private final InPlaceDftAlgorithm inplaceAlgorithmColumns;
+  // if set, used instead of the in place algorithms
+  private final BatchedDftAlgorithm batchedAlgorithmRows;
+  private final BatchedDftAlgorithm batchedAlgorithmColumns;
+  private final ParallelismConfig parallelismConfig;
+
+  private FftTransform2D(
+    ParallelismConfig parallelismConfig,
+    int width,
+    int height,
+    InPlaceDftAlgorithm inplaceAlgorithmRows,
+    InPlaceDftAlgorithm inplaceAlgorithmColumns,
+    BatchedDftAlgorithm batchedAlgorithmRows,
+    BatchedDftAlgorithm batchedAlgorithmColumns) {
+    this.parallelismConfig = parallelismConfig;
+    this.width = width;
+    this.height = height;
+    this.inplaceAlgorithmRows = inplaceAlgorithmRows;
+    this.inplaceAlgorithmColumns = inplaceAlgorithmColumns;
+    this.batchedAlgorithmRows = batchedAlgorithmRows;
+    this.batchedAlgorithmColumns = batchedAlgorithmColumns;
+    this.tablesWidth = DftTables.of(width);
+    this.tablesHeight = width == height ? tablesWidth : DftTables.of(height);
+    boolean batched = batchedAlgorithmRows != null;
+    this.workspace = ThreadLocal.withInitial(() -> new Workspace(width, height, batched));
+  }
+
+  public static FftTransform2D of(
+    ParallelismConfig parallelismConfig,
+    int width,
+    int height,
+    InPlaceDftAlgorithm inplaceAlgorithmRows,
+    InPlaceDftAlgorithm inplaceAlgorithmColumns) {
+    return new FftTransform2D(parallelismConfig, width, height, inplaceAlgorithmRows, inplaceAlgorithmColumns, null, null);
+  }
+
+  /**
+   * Creates a transform of blocks of rows respectively columns together with the given batched algorithms.
+   */
+  public static FftTransform2D ofBatched(
+    ParallelismConfig parallelismConfig,
+    int width,
+    int height,
+    BatchedDftAlgorithm batchedAlgorithmRows,
+    BatchedDftAlgorithm batchedAlgorithmColumns) {
+    return new FftTransform2D(parallelismConfig, width, height, null, null, batchedAlgorithmRows, batchedAlgorithmColumns);
+  }
+
+  /**
+   * @return A plan that executes this transform from the given input into the given output, both in column-major
+   * layout. They can be the same array to transform in place.
+   */
+  public FftPlan2D bind(double[] inputTabularData, double[] outputTabularData) {
+    return new FftPlan2D(this, inputTabularData, outputTabularData);
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  ParallelismConfig getParallelismConfig() {
+    return parallelismConfig;
+  }
+
+  /**
+   * Transforms the data in place, it must hold width*height elements in column-major layout.
+   */
+  void execute(double[] data) {
+    parallelismConfig.apply(IntStream.range(0, getRowTaskCount()))
+        .forEach(task -> executeRowTask(task, data));
+    parallelismConfig.apply(IntStream.range(0, getColumnTaskCount()))
+        .forEach(task -> executeColumnTask(task, data));
+  }
+
+  int getRowTaskCount() {
+    return (height + ROW_BLOCK - 1) / ROW_BLOCK;
+  }
+
+  int getColumnTaskCount() {
+    return batchedAlgorithmColumns != null ? (width + COLUMN_BLOCK - 1) / COLUMN_BLOCK : width;
+  }
+
+  void executeRowTask(int block, double[] data) {
+    if (batchedAlgorithmRows != null) {
+      executeBatchedRowBlock(block, data);
+    } else {
+      executeRowBlock(block, data);
+    }
+  }
+
+  void executeColumnTask(int task, double[] data) {
+    if (batchedAlgorithmColumns != null) {
+      executeBatchedColumnBlock(task, data);
+    } else {
+      executeColumn(task, data);
+    }
+  }
+
+  private void executeBatchedColumnBlock(int block, double[] data) {
+    double[] batchBuffer = workspace.get().batchBuffer;
+    int firstCol = block * COLUMN_BLOCK;
+    int colCount = Math.min(COLUMN_BLOCK, width - firstCol);
+    for (int c = 0; c < colCount; c++) {
+      int indexOffset = (firstCol + c) * height;
+      for (int row = 0; row < height; row++) {
+        batchBuffer[row * colCount + c] = data[indexOffset + row];
+      }
+    }
+    transformColumns(batchBuffer, colCount);
+    for (int c = 0; c < colCount; c++) {
+      int indexOffset = (firstCol + c) * height;
+      for (int row = 0; row < height; row++) {
+        data[indexOffset + row] = batchBuffer[row * colCount + c];
+      }
+    }
+  }
+
+  /**
+   * @return The amount of columns that are transformed together, see {@link #transformColumns(double[], int)}.
+   */
+  int getColumnBlock() {
+    return batchedAlgorithmColumns != null ? COLUMN_BLOCK : 1;
+  }
+
+  /**
+   * @return A buffer of the executing thread for up to {@link #getColumnBlock()} interleaved columns.
+   */
+  double[] getColumnBuffer() {
+    Workspace buffers = workspace.get();
+    return batchedAlgorithmColumns != null ? buffers.batchBuffer : buffers.heightBuffer;
+  }
+
+  /**
+   * Transforms colCount interleaved columns in place, element j of column c is at j * colCount + c.
+   */
+  void transformColumns(double[] buffer, int colCount) {
+    Workspace buffers = workspace.get();
+    if (batchedAlgorithmColumns != null) {
+      batchedAlgorithmColumns.execute(buffer, colCount, tablesHeight, buffers.batchScratch);
+    } else if (colCount == 1 && buffer.length == height) {
+      // the in place algorithms take the length of the vector from the array
+      inplaceAlgorithmColumns.execute(buffer, tablesHeight, buffers.heightScratch);
+    } else {
+      double[] heightBuffer = buffers.heightBuffer;
+      for (int c = 0; c < colCount; c++) {
+        for (int row = 0; row < height; row++) {
+          heightBuffer[row] = buffer[row * colCount + c];
+        }
+        inplaceAlgorithmColumns.execute(heightBuffer, tablesHeight, buffers.heightScratch);
+        for (int row = 0; row < height; row++) {
+          buffer[row * colCount + c] = heightBuffer[row];
+        }
+      }
+    }
+  }
+
+  private void executeBatchedRowBlock(int block, double[] data) {
+    // the rows of a block are already interleaved in the column-major data, each column holds one element of every row
+    Workspace buffers = workspace.get();
+    double[] batchBuffer = buffers.batchBuffer;
+    int firstRow = block * ROW_BLOCK;
+    int rowCount = Math.min(ROW_BLOCK, height - firstRow);
+    for (int col = 0; col < width; col++) {
+      System.arraycopy(data, col * height + firstRow, batchBuffer, col * rowCount, rowCount);
+    }
+    batchedAlgorithmRows.execute(batchBuffer, rowCount, tablesWidth, buffers.batchScratch);
+    for (int col = 0; col < width; col++) {
+      System.arraycopy(batchBuffer, col * rowCount, data, col * height + firstRow, rowCount);
+    }
+  }
+
+  private void executeColumn(int col, double[] data) {
+    Workspace buffers = workspace.get();
+    double[] heightBuffer = buffers.heightBuffer;
+    int indexOffset = col * height;
+    System.arraycopy(data, indexOffset, heightBuffer, 0, heightBuffer.length);
+    transformColumns(heightBuffer, 1);
+    System.arraycopy(heightBuffer, 0, data, indexOffset, heightBuffer.length);
+  }
+
+  private void executeRowBlock(int block, double[] data) {
+    // a row is strided by height, so rows are gathered in blocks: each column contributes a contiguous run of
+    // ROW_BLOCK values, which uses whole cache lines instead of one value per line
+    Workspace buffers = workspace.get();
+    double[][] rowBuffers = buffers.rowBuffers;
+    int firstRow = block * ROW_BLOCK;
+    int rowCount = Math.min(ROW_BLOCK, height - firstRow);
+    for (int col = 0; col < width; col++) {
+      int indexOffset = col * height + firstRow;
+      for (int r = 0; r < rowCount; r++) {
+        rowBuffers[r][col] = data[indexOffset + r];
+      }
+    }
+    for (int r = 0; r < rowCount; r++) {
+      inplaceAlgorithmRows.execute(
+          rowBuffers[r],
+          tablesWidth,
+          buffers.widthScratch);
+    }
+    for (int col = 0; col < width; col++) {
+      int indexOffset = col * height + firstRow;
+      for (int r = 0; r < rowCount; r++) {
+        data[indexOffset + r] = rowBuffers[r][col];
+      }
+    }
+  }
+
+  private static class Workspace {
+    private final double[][] rowBuffers;
+    private final double[] widthScratch;
+    private final double[] heightBuffer;
+    private final double[] heightScratch;
+    private final double[] batchBuffer;
+    private final double[] batchScratch;
+
+    private Workspace(int width, int height, boolean batched) {
+      if (batched) {
+        int batchLength = Math.max(ROW_BLOCK * width, COLUMN_BLOCK * height);
+        this.rowBuffers = null;
+        this.widthScratch = null;
+        this.heightBuffer = null;
+        this.heightScratch = null;
+        this.batchBuffer = new double[batchLength];
+        this.batchScratch = new double[batchLength];
+      } else {
+        this.rowBuffers = new double[ROW_BLOCK][width];
+        this.widthScratch = new double[width];
+        this.heightBuffer = new double[height];
+        this.heightScratch = new double[height];
+        this.batchBuffer = null;
+        this.batchScratch = null;
+      }
+    }
+  }
+}
@@ -9,9 +9,8 @@ public interface InPlaceDftAlgorithm {
   /**
    * Executes the algorithm by transforming the input data in place.
    * @param data The input data that will be modified in the process to later hold the result.
-   * @param cosTable The cosine table: cos(2 * PI * i / n) for i=0..data.length. Is precomputed and stored
-   * for execution performance.
-   * @param sinTable The sine table: sin(2 * PI * i / n) for i=0..data.length. See cosTable.
+   * @param tables The twiddle factors for data.length. Are precomputed and stored by the plan for execution performance.
+   * @param scratch A buffer of data.length that the algorithm may overwrite, owned by the executing thread.
    */
-  void execute(double[] data, double[] cosTable, double[] sinTable);
+  void execute(double[] data, DftTables tables, double[] scratch);
 }
@@ -0,0 +1,219 @@
+package de.dandit.cartogram.core.dft;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import de.dandit.cartogram.core.api.Fft2DPlanner;
+import de.dandit.cartogram.core.api.ParallelismConfig;
+
+/**
+ * Chooses the fastest of several planners for every transform type and size, like FFTW's measuring planner.
+ * The first time a transform of a type and size is planned, every candidate is executed a few times on a grid
+ * of that size and the fastest one is remembered. Candidates differ in the 1D kernel, in batching and, if the given
+ * parallelism config runs in parallel, in running single-threaded or in parallel. The candidates round differently,
+ * so results can differ in the last bits depending on the choice.
+ * The remembered choices ("wisdom") can be saved to a file and loaded by later processes on the same kind of machine
+ * to skip the measurements. The planner can be shared by concurrent calculations.
+ */
+public class MeasuringFftPlanner implements Fft2DPlanner {
+  private static final int WARMUP_RUNS = 3;
+  private static final int MEASURED_RUNS = 5;
+
+  public enum TransformType {
+    DCT2,
+    DCT3,
+    DCT3_DST3,
+    DST3_DCT3
+  }
+
+  public enum Candidate {
+    RADIX2_SINGLE_THREADED(false, DefaultFftPlanner::new),
+    RADIX2_PARALLEL(true, DefaultFftPlanner::new),
+    RADIX4_SINGLE_THREADED(false, Radix4FftPlanner::new),
+    RADIX4_PARALLEL(true, Radix4FftPlanner::new),
+    BATCHED_SINGLE_THREADED(false, BatchedFftPlanner::new),
+    BATCHED_PARALLEL(true, BatchedFftPlanner::new);
+
+    private final boolean parallel;
+    private final Function<ParallelismConfig, Fft2DPlanner> plannerFactory;
+
+    Candidate(boolean parallel, Function<ParallelismConfig, Fft2DPlanner> plannerFactory) {
+      this.parallel = parallel;
+      this.plannerFactory = plannerFactory;
+    }
+
+    public boolean isParallel() {
+      return parallel;
+    }
+  }
+
+  private final Map<Candidate, Fft2DPlanner> planners;
+  private final Map<String, Candidate> wisdom = new ConcurrentHashMap<>();
+
+  /**
+   * @param parallelismConfig If it runs in parallel, the parallel candidates are measured as well.
+   */
+  public MeasuringFftPlanner(ParallelismConfig parallelismConfig) {
+    this.planners = new TreeMap<>();
+    for (Candidate candidate : Candidate.values()) {
+      if (!candidate.parallel) {
+        planners.put(candidate, candidate.plannerFactory.apply(ParallelismConfig.ofSingleThreaded()));
+      } else if (parallelismConfig.isRunInParallel()) {
+        planners.put(candidate, candidate.plannerFactory.apply(parallelismConfig));
+      }
+    }
+  }
+
+  @Override
+  public FftPlan2D createDCT2_2D(int width, int height, double[] inputData, double[] outputData) {
+    return create(TransformType.DCT2, width, height, inputData, outputData);
+  }
+
+  @Override
+  public FftPlan2D createDCT3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return create(TransformType.DCT3, width, height, inputData, outputData);
+  }
+
+  @Override
+  public FftPlan2D createDCT3_DST3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return create(TransformType.DCT3_DST3, width, height, inputData, outputData);
+  }
+
+  @Override
+  public FftPlan2D createDST3_DCT3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return create(TransformType.DST3_DCT3, width, height, inputData, outputData);
+  }
+
+  /**
+   * @return The candidate used for transforms of the given type and size, measuring the candidates if there is no
+   * wisdom about them yet.
+   */
+  public Candidate getChoice(TransformType type, int width, int height) {
+    String key = wisdomKey(type, width, height);
+    Candidate choice = wisdom.get(key);
+    if (choice == null) {
+      // measured outside of the map, so concurrent planning of other sizes is not blocked
+      wisdom.putIfAbsent(key, measureFastest(type, width, height));
+      choice = wisdom.get(key);
+    }
+    return choice;
+  }
+
+  private FftPlan2D create(TransformType type, int width, int height, double[] inputData, double[] outputData) {
+    return create(planners.get(getChoice(type, width, height)), type, width, height, inputData, outputData);
+  }
+
+  private static FftPlan2D create(Fft2DPlanner planner, TransformType type, int width, int height,
+                                  double[] inputData, double[] outputData) {
+    switch (type) {
+      case DCT2:
+        return planner.createDCT2_2D(width, height, inputData, outputData);
+      case DCT3:
+        return planner.createDCT3_2D(width, height, inputData, outputData);
+      case DCT3_DST3:
+        return planner.createDCT3_DST3_2D(width, height, inputData, outputData);
+      case DST3_DCT3:
+        return planner.createDST3_DCT3_2D(width, height, inputData, outputData);
+      default:
+        throw new IllegalArgumentException("Unknown transform type: " + type);
+    }
+  }
+
+  private Candidate measureFastest(TransformType type, int width, int height) {
+    double[] data = new double[width * height];
+    Candidate fastest = null;
+    long fastestNanos = Long.MAX_VALUE;
+    for (Map.Entry<Candidate, Fft2DPlanner> candidate : planners.entrySet()) {
+      FftPlan2D plan = create(candidate.getValue(), type, width, height, data, data);
+      long bestNanos = Long.MAX_VALUE;
+      for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+        // the transforms are linear, refilling keeps the values from growing with every run
+        for (int i = 0; i < data.length; i++) {
+          data[i] = (i % 7) - 3;
+        }
+        long start = System.nanoTime();
+        plan.execute();
+        long nanos = System.nanoTime() - start;
+        if (run >= WARMUP_RUNS) {
+          bestNanos = Math.min(bestNanos, nanos);
+        }
+      }
+      if (bestNanos < fastestNanos) {
+        fastest = candidate.getKey();
+        fastestNanos = bestNanos;
+      }
+    }
+    return fastest;
+  }
+
+  /**
+   * Writes the choices made so far, one per line as "type width height candidate", replacing the file if it exists.
+   */
+  public void saveWisdom(Path path) throws IOException {
+    Map<String, Candidate> sorted = new TreeMap<>(wisdom);
+    try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, Candidate> entry : sorted.entrySet()) {
+        writer.write(entry.getKey() + " " + entry.getValue().name());
+        writer.newLine();
+      }
+    }
+  }
+
+  /**
+   * Loads choices saved by {@link #saveWisdom(Path)}, replacing the choices made for the same types and sizes.
+   * Choices of candidates that are unknown or not measured by this planner (like parallel ones if this planner
+   * runs single-threaded) are ignored, so they are measured again when needed.
+   */
+  public void loadWisdom(Path path) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] parts = line.split("\\s+");
+        if (parts.length != 4) {
+          throw new IOException("Malformed wisdom in line " + lineNumber + ": " + line);
+        }
+        TransformType type;
+        int width;
+        int height;
+        try {
+          type = TransformType.valueOf(parts[0]);
+          width = Integer.parseInt(parts[1]);
+          height = Integer.parseInt(parts[2]);
+        } catch (IllegalArgumentException e) {
+          throw new IOException("Malformed wisdom in line " + lineNumber + ": " + line, e);
+        }
+        Candidate candidate = findCandidate(parts[3]);
+        if (candidate != null && planners.containsKey(candidate)) {
+          wisdom.put(wisdomKey(type, width, height), candidate);
+        }
+      }
+    }
+  }
+
+  private static Candidate findCandidate(String name) {
+    for (Candidate candidate : Candidate.values()) {
+      if (candidate.name().equals(name)) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private static String wisdomKey(TransformType type, int width, int height) {
+    return type.name() + " " + width + " " + height;
+  }
+}
@@ -0,0 +1,232 @@
+package de.dandit.cartogram.core.dft;
+
+import java.util.Arrays;
+
+/**
+ * A complex FFT of a fixed power of 2 length that combines two radix-2 stages into one radix-4 stage, so the data
+ * is passed half as often and each butterfly needs three instead of four twiddle multiplications. The bit-reversal
+ * permutation and the twiddle factors of every stage are calculated once, the factors are stored in the order they
+ * are used.
+ */
+public final class Radix4Fft {
+  private final int n;
+  private final int[] swaps; // pairs of indices exchanged by the bit-reversal permutation
+  private final boolean leadingRadix2Stage; // an odd amount of radix-2 stages starts with a radix-2 stage
+  private final double[] twiddles; // per radix-4 stage of quarter size q and j < q: cos/sin of W^j, W^2j, W^3j
+
+  private Radix4Fft(int n) {
+    int levels = 31 - Integer.numberOfLeadingZeros(n);
+    if (n <= 0 || 1 << levels != n) {
+      throw new IllegalArgumentException("Length is not a power of 2: " + n);
+    }
+    this.n = n;
+    int swapCount = 0;
+    int[] swapBuffer = new int[n];
+    for (int i = 0; i < n; i++) {
+      int j = levels == 0 ? 0 : Integer.reverse(i) >>> (32 - levels);
+      if (j > i) {
+        swapBuffer[swapCount++] = i;
+        swapBuffer[swapCount++] = j;
+      }
+    }
+    this.swaps = Arrays.copyOf(swapBuffer, swapCount);
+    this.leadingRadix2Stage = levels % 2 == 1;
+
+    int twiddleCount = 0;
+    for (int q = leadingRadix2Stage ? 2 : 1; 4 * q <= n; q *= 4) {
+      twiddleCount += 6 * q;
+    }
+    this.twiddles = new double[twiddleCount];
+    int offset = 0;
+    for (int q = leadingRadix2Stage ? 2 : 1; 4 * q <= n; q *= 4) {
+      for (int j = 0; j < q; j++) {
+        for (int power = 1; power <= 3; power++) {
+          double angle = 2 * Math.PI * power * j / (4 * q);
+          twiddles[offset++] = Math.cos(angle);
+          twiddles[offset++] = Math.sin(angle);
+        }
+      }
+    }
+  }
+
+  public static Radix4Fft of(int n) {
+    return new Radix4Fft(n);
+  }
+
+  public int getLength() {
+    return n;
+  }
+
+  /**
+   * Computes the DFT of the n complex values starting at the given offsets in place.
+   */
+  public void transform(double[] real, int realOffset, double[] imag, int imagOffset) {
+    for (int k = 0; k < swaps.length; k += 2) {
+      int i = swaps[k];
+      int j = swaps[k + 1];
+      double temp = real[realOffset + i];
+      real[realOffset + i] = real[realOffset + j];
+      real[realOffset + j] = temp;
+      temp = imag[imagOffset + i];
+      imag[imagOffset + i] = imag[imagOffset + j];
+      imag[imagOffset + j] = temp;
+    }
+
+    int q = 1;
+    if (leadingRadix2Stage) {
+      // butterflies of size 2 need no twiddles
+      for (int i = 0; i < n; i += 2) {
+        int a = realOffset + i;
+        int b = imagOffset + i;
+        double tr = real[a + 1];
+        double ti = imag[b + 1];
+        real[a + 1] = real[a] - tr;
+        imag[b + 1] = imag[b] - ti;
+        real[a] += tr;
+        imag[b] += ti;
+      }
+      q = 2;
+    } else if (n >= 4) {
+      // butterflies of size 4 need no twiddles either
+      for (int i = 0; i < n; i += 4) {
+        butterfly(real, realOffset + i, imag, imagOffset + i, 1,
+          real[realOffset + i + 2], imag[imagOffset + i + 2],
+          real[realOffset + i + 1], imag[imagOffset + i + 1],
+          real[realOffset + i + 3], imag[imagOffset + i + 3]);
+      }
+      q = 4;
+    }
+
+    int twiddleOffset = leadingRadix2Stage ? 0 : 6;
+    for (; 4 * q <= n; q *= 4) {
+      int size = 4 * q;
+      for (int i = 0; i < n; i += size) {
+        for (int j = 0, t = twiddleOffset; j < q; j++, t += 6) {
+          int a = realOffset + i + j;
+          int b = imagOffset + i + j;
+          // the quarters at q and 2q hold the transforms of the elements 2 and 1 modulo 4 due to the bit reversal
+          double xr = real[a + 2 * q];
+          double xi = imag[b + 2 * q];
+          double t1r = xr * twiddles[t] + xi * twiddles[t + 1];
+          double t1i = xi * twiddles[t] - xr * twiddles[t + 1];
+          xr = real[a + q];
+          xi = imag[b + q];
+          double t2r = xr * twiddles[t + 2] + xi * twiddles[t + 3];
+          double t2i = xi * twiddles[t + 2] - xr * twiddles[t + 3];
+          xr = real[a + 3 * q];
+          xi = imag[b + 3 * q];
+          double t3r = xr * twiddles[t + 4] + xi * twiddles[t + 5];
+          double t3i = xi * twiddles[t + 4] - xr * twiddles[t + 5];
+          butterfly(real, a, imag, b, q, t1r, t1i, t2r, t2i, t3r, t3i);
+        }
+      }
+      twiddleOffset += 6 * q;
+    }
+  }
+
+  /**
+   * Computes the DFTs of batch interleaved complex vectors in place: Element i of vector b is at
+   * offset + i * batch + b. The innermost loops run over the vectors, which are independent of each other, so
+   * their butterflies can overlap in the pipeline instead of waiting on each other.
+   */
+  public void transformBatch(double[] real, int realOffset, double[] imag, int imagOffset, int batch) {
+    for (int k = 0; k < swaps.length; k += 2) {
+      int i = swaps[k] * batch;
+      int j = swaps[k + 1] * batch;
+      for (int b = 0; b < batch; b++) {
+        double temp = real[realOffset + i + b];
+        real[realOffset + i + b] = real[realOffset + j + b];
+        real[realOffset + j + b] = temp;
+        temp = imag[imagOffset + i + b];
+        imag[imagOffset + i + b] = imag[imagOffset + j + b];
+        imag[imagOffset + j + b] = temp;
+      }
+    }
+
+    int q = 1;
+    if (leadingRadix2Stage) {
+      for (int i = 0; i < n; i += 2) {
+        int a = realOffset + i * batch;
+        int c = imagOffset + i * batch;
+        for (int b = 0; b < batch; b++) {
+          double tr = real[a + batch + b];
+          double ti = imag[c + batch + b];
+          real[a + batch + b] = real[a + b] - tr;
+          imag[c + batch + b] = imag[c + b] - ti;
+          real[a + b] += tr;
+          imag[c + b] += ti;
+        }
+      }
+      q = 2;
+    } else if (n >= 4) {
+      for (int i = 0; i < n; i += 4) {
+        int a = realOffset + i * batch;
+        int c = imagOffset + i * batch;
+        for (int b = 0; b < batch; b++) {
+          butterfly(real, a + b, imag, c + b, batch,
+            real[a + 2 * batch + b], imag[c + 2 * batch + b],
+            real[a + batch + b], imag[c + batch + b],
+            real[a + 3 * batch + b], imag[c + 3 * batch + b]);
+        }
+      }
+      q = 4;
+    }
+
+    int twiddleOffset = leadingRadix2Stage ? 0 : 6;
+    for (; 4 * q <= n; q *= 4) {
+      int size = 4 * q;
+      int stride = q * batch;
+      for (int i = 0; i < n; i += size) {
+        for (int j = 0, t = twiddleOffset; j < q; j++, t += 6) {
+          double c1 = twiddles[t];
+          double s1 = twiddles[t + 1];
+          double c2 = twiddles[t + 2];
+          double s2 = twiddles[t + 3];
+          double c3 = twiddles[t + 4];
+          double s3 = twiddles[t + 5];
+          int a = realOffset + (i + j) * batch;
+          int c = imagOffset + (i + j) * batch;
+          for (int b = 0; b < batch; b++) {
+            double xr = real[a + 2 * stride + b];
+            double xi = imag[c + 2 * stride + b];
+            double t1r = xr * c1 + xi * s1;
+            double t1i = xi * c1 - xr * s1;
+            xr = real[a + stride + b];
+            xi = imag[c + stride + b];
+            double t2r = xr * c2 + xi * s2;
+            double t2i = xi * c2 - xr * s2;
+            xr = real[a + 3 * stride + b];
+            xi = imag[c + 3 * stride + b];
+            double t3r = xr * c3 + xi * s3;
+            double t3i = xi * c3 - xr * s3;
+            butterfly(real, a + b, imag, c + b, stride, t1r, t1i, t2r, t2i, t3r, t3i);
+          }
+        }
+      }
+      twiddleOffset += 6 * q;
+    }
+  }
+
+  // X[j] = t0+t1+t2+t3, X[j+q] = t0-i*t1-t2+i*t3, X[j+2q] = t0-t1+t2-t3, X[j+3q] = t0+i*t1-t2-i*t3
+  private static void butterfly(double[] real, int a, double[] imag, int b, int q,
+                                double t1r, double t1i, double t2r, double t2i, double t3r, double t3i) {
+    double t0r = real[a];
+    double t0i = imag[b];
+    double sum02r = t0r + t2r;
+    double sum02i = t0i + t2i;
+    double diff02r = t0r - t2r;
+    double diff02i = t0i - t2i;
+    double sum13r = t1r + t3r;
+    double sum13i = t1i + t3i;
+    double diff13r = t1r - t3r;
+    double diff13i = t1i - t3i;
+    real[a] = sum02r + sum13r;
+    imag[b] = sum02i + sum13i;
+    real[a + q] = diff02r + diff13i;
+    imag[b + q] = diff02i - diff13r;
+    real[a + 2 * q] = sum02r - sum13r;
+    imag[b + 2 * q] = sum02i - sum13i;
+    real[a + 3 * q] = diff02r - diff13i;
+    imag[b + 3 * q] = diff02i + diff13r;
+  }
+}
@@ -0,0 +1,37 @@
+package de.dandit.cartogram.core.dft;
+
+import de.dandit.cartogram.core.api.Fft2DPlanner;
+import de.dandit.cartogram.core.api.ParallelismConfig;
+
+/**
+ * Plans the same transforms as the {@link DefaultFftPlanner}, but the half length complex FFTs of the real
+ * transforms use the {@link Radix4Fft} instead of the radix-2 FFT.
+ */
+public class Radix4FftPlanner implements Fft2DPlanner {
+
+  private final ParallelismConfig parallelismConfig;
+
+  public Radix4FftPlanner(ParallelismConfig parallelismConfig) {
+    this.parallelismConfig = parallelismConfig;
+  }
+
+  @Override
+  public FftPlan2D createDCT2_2D(int width, int height, double[] inputData, double[] outputData) {
+    return new FftPlan2D(parallelismConfig, width, height, inputData, outputData, RealDCT::transformRadix4, RealDCT::transformRadix4);
+  }
+
+  @Override
+  public FftPlan2D createDCT3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return new FftPlan2D(parallelismConfig, width, height, inputData, outputData, RealDCT::inverseTransformRadix4, RealDCT::inverseTransformRadix4);
+  }
+
+  @Override
+  public FftPlan2D createDCT3_DST3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return new FftPlan2D(parallelismConfig, width, height, inputData, outputData, DST::inverseTransformRadix4, RealDCT::inverseTransformRadix4);
+  }
+
+  @Override
+  public FftPlan2D createDST3_DCT3_2D(int width, int height, double[] inputData, double[] outputData) {
+    return new FftPlan2D(parallelismConfig, width, height, inputData, outputData, RealDCT::inverseTransformRadix4, DST::inverseTransformRadix4);
+  }
+}
@@ -0,0 +1,288 @@
+package de.dandit.cartogram.core.dft;
+
+/**
+ * Computes the same DCT-II and DCT-III as {@link DCT}, but as the reordered input respectively output is real, it is
+ * packed into a complex FFT of half the length (see Makhoul, "A fast cosine transform in one and two dimensions",
+ * 1980). This needs about half the arithmetic of transforming the real sequence with a full length complex FFT.
+ * The array length must be a power of 2 or zero.
+ */
+public final class RealDCT {
+
+  private RealDCT() {
+  }
+
+  /**
+   * Computes the unscaled DCT type II on the specified array in place, see {@link DCT#transform(double[], DftTables, double[])}.
+   *
+   * @param vector the vector of numbers to transform
+   * @param tables the twiddle factors for the length of the vector
+   * @param scratch a buffer as long as the vector, its content is overwritten
+   */
+  public static void transform(double[] vector, DftTables tables, double[] scratch) {
+    transform(vector, tables, scratch, false);
+  }
+
+  /**
+   * Like {@link #transform(double[], DftTables, double[])} but uses the radix-4 FFT of the tables.
+   */
+  public static void transformRadix4(double[] vector, DftTables tables, double[] scratch) {
+    transform(vector, tables, scratch, true);
+  }
+
+  private static void transform(double[] vector, DftTables tables, double[] scratch, boolean radix4) {
+    int len = vector.length;
+    if (len < 2) {
+      if (len == 1)
+        vector[0] *= 2;
+      return;
+    }
+    int halfLen = len / 2;
+    // the even and odd elements of the reordered sequence v are the real and imaginary parts of z
+    // with v[j] = vector[2j] for j < halfLen and v[len-1-j] = vector[2j+1]
+    for (int m = 0; m < halfLen; m++) {
+      scratch[m] = reordered(vector, 2 * m, halfLen, len);
+      scratch[halfLen + m] = reordered(vector, 2 * m + 1, halfLen, len);
+    }
+    transformHalfLength(scratch, halfLen, tables, radix4);
+
+    double[] cosTable = tables.getCosTable();
+    double[] sinTable = tables.getSinTable();
+    double[] shiftCos = tables.getShiftCosTable();
+    double[] shiftSin = tables.getShiftSinTable();
+    // the spectrum V of v is split into the spectra of its even and odd elements, E = (Z[k] + conj(Z[M-k])) / 2 and
+    // O = (Z[k] - conj(Z[M-k])) / 2i, then V[k] = E[k] + exp(-2 PI i k/len) O[k] and V[len-k] = conj(V[k])
+    double[] result = vector;
+    for (int k = 0; k < halfLen; k++) {
+      int mirrored = k == 0 ? 0 : halfLen - k;
+      double aRe = scratch[k];
+      double aIm = scratch[halfLen + k];
+      double bRe = scratch[mirrored];
+      double bIm = -scratch[halfLen + mirrored];
+      double evenRe = 0.5 * (aRe + bRe);
+      double evenIm = 0.5 * (aIm + bIm);
+      double oddRe = 0.5 * (aIm - bIm);
+      double oddIm = -0.5 * (aRe - bRe);
+      double vRe = evenRe + cosTable[k] * oddRe + sinTable[k] * oddIm;
+      double vIm = evenIm + cosTable[k] * oddIm - sinTable[k] * oddRe;
+      // reading only from scratch, so writing both outputs of k is safe
+      result[k] = (vRe * shiftCos[k] + vIm * shiftSin[k]) * 2;
+      if (k > 0) {
+        result[len - k] = (vRe * shiftCos[len - k] - vIm * shiftSin[len - k]) * 2;
+      }
+    }
+    // V[M] = E[0] - O[0] is real
+    result[halfLen] = (scratch[0] - scratch[halfLen]) * shiftCos[halfLen] * 2;
+  }
+
+  /**
+   * Computes the unscaled DCT type II of batch interleaved vectors in place, see {@link BatchedDftAlgorithm}.
+   * Each vector is transformed exactly like by {@link #transformRadix4(double[], DftTables, double[])}.
+   */
+  public static void transformBatch(double[] data, int batch, DftTables tables, double[] scratch) {
+    int len = tables.getLength();
+    if (len < 2) {
+      if (len == 1) {
+        for (int b = 0; b < batch; b++) {
+          data[b] *= 2;
+        }
+      }
+      return;
+    }
+    int halfLen = len / 2;
+    int imagOffset = halfLen * batch;
+    for (int m = 0; m < halfLen; m++) {
+      int even = reorderedIndex(2 * m, halfLen, len) * batch;
+      int odd = reorderedIndex(2 * m + 1, halfLen, len) * batch;
+      int target = m * batch;
+      for (int b = 0; b < batch; b++) {
+        scratch[target + b] = data[even + b];
+        scratch[imagOffset + target + b] = data[odd + b];
+      }
+    }
+    tables.getHalfLengthFft().transformBatch(scratch, 0, scratch, imagOffset, batch);
+
+    double[] cosTable = tables.getCosTable();
+    double[] sinTable = tables.getSinTable();
+    double[] shiftCos = tables.getShiftCosTable();
+    double[] shiftSin = tables.getShiftSinTable();
+    for (int k = 0; k < halfLen; k++) {
+      int a = k * batch;
+      int mirrored = (k == 0 ? 0 : halfLen - k) * batch;
+      double cos = cosTable[k];
+      double sin = sinTable[k];
+      double shiftCosK = shiftCos[k];
+      double shiftSinK = shiftSin[k];
+      double shiftCosMirrored = k == 0 ? 0. : shiftCos[len - k];
+      double shiftSinMirrored = k == 0 ? 0. : shiftSin[len - k];
+      int target = (len - k) * batch;
+      for (int b = 0; b < batch; b++) {
+        double aRe = scratch[a + b];
+        double aIm = scratch[imagOffset + a + b];
+        double bRe = scratch[mirrored + b];
+        double bIm = -scratch[imagOffset + mirrored + b];
+        double evenRe = 0.5 * (aRe + bRe);
+        double evenIm = 0.5 * (aIm + bIm);
+        double oddRe = 0.5 * (aIm - bIm);
+        double oddIm = -0.5 * (aRe - bRe);
+        double vRe = evenRe + cos * oddRe + sin * oddIm;
+        double vIm = evenIm + cos * oddIm - sin * oddRe;
+        data[a + b] = (vRe * shiftCosK + vIm * shiftSinK) * 2;
+        if (k > 0) {
+          data[target + b] = (vRe * shiftCosMirrored - vIm * shiftSinMirrored) * 2;
+        }
+      }
+    }
+    for (int b = 0; b < batch; b++) {
+      data[imagOffset + b] = (scratch[b] - scratch[imagOffset + b]) * shiftCos[halfLen] * 2;
+    }
+  }
+
+  private static void transformHalfLength(double[] scratch, int halfLen, DftTables tables, boolean radix4) {
+    if (radix4) {
+      tables.getHalfLengthFft().transform(scratch, 0, scratch, halfLen);
+    } else {
+      Fft.transformRadix2(scratch, 0, scratch, halfLen, halfLen, tables.getCosTable(), tables.getSinTable(), 2);
+    }
+  }
+
+  private static double reordered(double[] vector, int j, int halfLen, int len) {
+    return vector[reorderedIndex(j, halfLen, len)];
+  }
+
+  private static int reorderedIndex(int j, int halfLen, int len) {
+    return j < halfLen ? 2 * j : 2 * (len - 1 - j) + 1;
+  }
+
+  /**
+   * Computes the unscaled DCT type III on the specified array in place, see {@link DCT#inverseTransform(double[], DftTables, double[])}.
+   *
+   * @param vector the vector of numbers to transform
+   * @param tables the twiddle factors for the length of the vector
+   * @param scratch a buffer as long as the vector, its content is overwritten
+   */
+  public static void inverseTransform(double[] vector, DftTables tables, double[] scratch) {
+    inverseTransform(vector, tables, scratch, false);
+  }
+
+  /**
+   * Like {@link #inverseTransform(double[], DftTables, double[])} but uses the radix-4 FFT of the tables.
+   */
+  public static void inverseTransformRadix4(double[] vector, DftTables tables, double[] scratch) {
+    inverseTransform(vector, tables, scratch, true);
+  }
+
+  private static void inverseTransform(double[] vector, DftTables tables, double[] scratch, boolean radix4) {
+    int len = vector.length;
+    if (len < 2) {
+      return; // Y_0 = X_0
+    }
+    int halfLen = len / 2;
+    double[] cosTable = tables.getCosTable();
+    double[] sinTable = tables.getSinTable();
+    double[] shiftCos = tables.getShiftCosTable();
+    double[] shiftSin = tables.getShiftSinTable();
+    // the output is the real sequence v with the Hermitian spectrum V[k] = exp(PI i k/(2 len)) (X[k] - i X[len-k]) / 2,
+    // its even and odd elements are the real and imaginary parts of the inverse transform of half length of
+    // q[k] = (V[k] + V[k+M]) + i exp(2 PI i k/len) (V[k] - V[k+M]) with V[k+M] = conj(V[M-k])
+    for (int k = 0; k < halfLen; k++) {
+      double vRe = spectrumRe(vector, k, len, shiftCos, shiftSin);
+      double vIm = spectrumIm(vector, k, len, shiftCos, shiftSin);
+      int mirrored = halfLen - k;
+      double wRe = spectrumRe(vector, mirrored, len, shiftCos, shiftSin);
+      double wIm = -spectrumIm(vector, mirrored, len, shiftCos, shiftSin);
+      double aRe = vRe + wRe;
+      double aIm = vIm + wIm;
+      double bRe = vRe - wRe;
+      double bIm = vIm - wIm;
+      // the inverse transform is the conjugate of the forward transform of the conjugate
+      scratch[k] = aRe - cosTable[k] * bIm - sinTable[k] * bRe;
+      scratch[halfLen + k] = -(aIm + cosTable[k] * bRe - sinTable[k] * bIm);
+    }
+    transformHalfLength(scratch, halfLen, tables, radix4);
+
+    // y[2i] = 2 v[i] and y[2i+1] = 2 v[len-1-i] with v[2m] = Re z[m] and v[2m+1] = -Im z[m]
+    for (int i = 0; i < halfLen; i++) {
+      vector[i * 2] = unpacked(scratch, i, halfLen) * 2;
+      vector[i * 2 + 1] = unpacked(scratch, len - 1 - i, halfLen) * 2;
+    }
+  }
+
+  /**
+   * Computes the unscaled DCT type III of batch interleaved vectors in place, see {@link BatchedDftAlgorithm}.
+   * Each vector is transformed exactly like by {@link #inverseTransformRadix4(double[], DftTables, double[])}.
+   */
+  public static void inverseTransformBatch(double[] data, int batch, DftTables tables, double[] scratch) {
+    int len = tables.getLength();
+    if (len < 2) {
+      return; // Y_0 = X_0
+    }
+    int halfLen = len / 2;
+    int imagOffset = halfLen * batch;
+    double[] cosTable = tables.getCosTable();
+    double[] sinTable = tables.getSinTable();
+    double[] shiftCos = tables.getShiftCosTable();
+    double[] shiftSin = tables.getShiftSinTable();
+    for (int k = 0; k < halfLen; k++) {
+      int mirrored = halfLen - k;
+      int index = k * batch;
+      int indexMirrored = (len - k) * batch;
+      int mirroredIndex = mirrored * batch;
+      int mirroredIndexMirrored = (len - mirrored) * batch;
+      double cos = cosTable[k];
+      double sin = sinTable[k];
+      double shiftCosK = shiftCos[k];
+      double shiftSinK = shiftSin[k];
+      double shiftCosMirrored = shiftCos[mirrored];
+      double shiftSinMirrored = shiftSin[mirrored];
+      for (int b = 0; b < batch; b++) {
+        double x = data[index + b];
+        double xMirrored = k == 0 ? 0. : data[indexMirrored + b];
+        double vRe = 0.5 * (x * shiftCosK + xMirrored * shiftSinK);
+        double vIm = 0.5 * (x * shiftSinK - xMirrored * shiftCosK);
+        double y = data[mirroredIndex + b];
+        double yMirrored = data[mirroredIndexMirrored + b]; // mirrored > 0
+        double wRe = 0.5 * (y * shiftCosMirrored + yMirrored * shiftSinMirrored);
+        double wIm = -(0.5 * (y * shiftSinMirrored - yMirrored * shiftCosMirrored));
+        double aRe = vRe + wRe;
+        double aIm = vIm + wIm;
+        double bRe = vRe - wRe;
+        double bIm = vIm - wIm;
+        scratch[index + b] = aRe - cos * bIm - sin * bRe;
+        scratch[imagOffset + index + b] = -(aIm + cos * bRe - sin * bIm);
+      }
+    }
+    tables.getHalfLengthFft().transformBatch(scratch, 0, scratch, imagOffset, batch);
+
+    for (int i = 0; i < halfLen; i++) {
+      int even = unpackedIndex(i, halfLen) * batch;
+      int odd = unpackedIndex(len - 1 - i, halfLen) * batch;
+      boolean evenNegated = i % 2 != 0;
+      boolean oddNegated = (len - 1 - i) % 2 != 0;
+      int target = 2 * i * batch;
+      for (int b = 0; b < batch; b++) {
+        double evenValue = scratch[even + b];
+        double oddValue = scratch[odd + b];
+        data[target + b] = (evenNegated ? -evenValue : evenValue) * 2;
+        data[target + batch + b] = (oddNegated ? -oddValue : oddValue) * 2;
+      }
+    }
+  }
+
+  private static double spectrumRe(double[] vector, int k, int len, double[] shiftCos, double[] shiftSin) {
+    double mirrored = k == 0 ? 0. : vector[len - k];
+    return 0.5 * (vector[k] * shiftCos[k] + mirrored * shiftSin[k]);
+  }
+
+  private static double spectrumIm(double[] vector, int k, int len, double[] shiftCos, double[] shiftSin) {
+    double mirrored = k == 0 ? 0. : vector[len - k];
+    return 0.5 * (vector[k] * shiftSin[k] - mirrored * shiftCos[k]);
+  }
+
+  private static double unpacked(double[] scratch, int j, int halfLen) {
+    return j % 2 == 0 ? scratch[j / 2] : -scratch[halfLen + j / 2];
+  }
+
+  private static int unpackedIndex(int j, int halfLen) {
+    return j % 2 == 0 ? j / 2 : halfLen + j / 2;
+  }
+}
@@ -0,0 +1,180 @@
+package de.dandit.cartogram.core.dft;
+
+import de.dandit.cartogram.core.api.ParallelismConfig;
+
+import java.util.stream.IntStream;
+
+/**
+ * Transforms data into its spectrum, multiplies the spectrum with a {@link SpectralKernel} and transforms the result
+ * back, or starts with a given spectrum and only filters and transforms it back.
+ * The steps are fused: After the forward transform of the rows, each block of columns is transformed, filtered and
+ * transformed back while it is in the buffer of the executing thread, before the rows are transformed back. This
+ * needs three sweeps over the grid instead of the five of two separate plans and a multiplication.
+ */
+public class SpectralConvolution2D {
+  private static final int PHASE_COUNT = 3; // forward rows, columns, inverse rows
+
+  private final FftTransform2D forward; // null if the input is the spectrum
+  private final FftTransform2D inverse;
+  private final SpectralKernel kernel;
+  private final double[] inputTabularData; // column-major layout
+  private final double[] outputTabularData; // column-major layout
+
+  private SpectralConvolution2D(FftTransform2D forward, FftTransform2D inverse, SpectralKernel kernel,
+                                double[] inputTabularData, double[] outputTabularData) {
+    int width = inverse.getWidth();
+    int height = inverse.getHeight();
+    if (forward != null && (forward.getWidth() != width || forward.getHeight() != height)) {
+      throw new IllegalArgumentException("Forward and inverse transform sizes do not match!");
+    }
+    if (kernel.getWidth() != width || kernel.getHeight() != height) {
+      throw new IllegalArgumentException("Kernel size does not match transform size!");
+    }
+    if (width * height != inputTabularData.length) {
+      throw new IllegalArgumentException("Array size does not match width*height!");
+    }
+    if (inputTabularData.length != outputTabularData.length) {
+      throw new IllegalArgumentException("Input array size does not match output array size");
+    }
+    if (forward != null && kernel.getShiftX() != 0) {
+      throw new IllegalArgumentException("A kernel shifted across columns can only filter a given spectrum.");
+    }
+    if (inputTabularData == outputTabularData && kernel.getShiftX() != 0) {
+      throw new IllegalArgumentException("A kernel shifted across columns needs separate input and output.");
+    }
+    this.forward = forward;
+    this.inverse = inverse;
+    this.kernel = kernel;
+    this.inputTabularData = inputTabularData;
+    this.outputTabularData = outputTabularData;
+  }
+
+  /**
+   * @return A convolution of the input with the forward transform, the kernel and the inverse transform into the
+   * output. Input and output can be the same array.
+   */
+  public static SpectralConvolution2D of(FftTransform2D forward, FftTransform2D inverse, SpectralKernel kernel,
+                                         double[] inputTabularData, double[] outputTabularData) {
+    return new SpectralConvolution2D(forward, inverse, kernel, inputTabularData, outputTabularData);
+  }
+
+  /**
+   * @return A convolution that filters the given spectrum with the kernel and transforms it into the output with the
+   * inverse transform. The spectrum is not modified unless it is the output.
+   */
+  public static SpectralConvolution2D ofSpectrum(FftTransform2D inverse, SpectralKernel kernel,
+                                                 double[] spectrum, double[] outputTabularData) {
+    return new SpectralConvolution2D(null, inverse, kernel, spectrum, outputTabularData);
+  }
+
+  public void execute() {
+    copyInput();
+    ParallelismConfig parallelismConfig = inverse.getParallelismConfig();
+    for (int phase = 0; phase < PHASE_COUNT; phase++) {
+      int currentPhase = phase;
+      parallelismConfig.apply(IntStream.range(0, getTaskCount(phase)))
+          .forEach(task -> executeTask(currentPhase, task));
+    }
+  }
+
+  /**
+   * Executes the given independent convolutions, which must not share any output data, together in three parallel
+   * passes like {@link FftPlan2D#executeAll(FftPlan2D...)}. The parallelism config of the first convolution is used.
+   */
+  public static void executeAll(SpectralConvolution2D... convolutions) {
+    if (convolutions.length == 0) {
+      return;
+    }
+    for (SpectralConvolution2D convolution : convolutions) {
+      convolution.copyInput();
+    }
+    ParallelismConfig parallelismConfig = convolutions[0].inverse.getParallelismConfig();
+    for (int phase = 0; phase < PHASE_COUNT; phase++) {
+      int currentPhase = phase;
+      int[] taskOffsets = new int[convolutions.length + 1];
+      for (int i = 0; i < convolutions.length; i++) {
+        taskOffsets[i + 1] = taskOffsets[i] + convolutions[i].getTaskCount(phase);
+      }
+      parallelismConfig.apply(IntStream.range(0, taskOffsets[convolutions.length]))
+          .forEach(task -> {
+            int i = FftPlan2D.planOfTask(taskOffsets, task);
+            convolutions[i].executeTask(currentPhase, task - taskOffsets[i]);
+          });
+    }
+  }
+
+  private void copyInput() {
+    // without forward transform the columns read the input themselves
+    if (forward != null && inputTabularData != outputTabularData) {
+      System.arraycopy(inputTabularData, 0, outputTabularData, 0, inputTabularData.length);
+    }
+  }
+
+  private int getTaskCount(int phase) {
+    switch (phase) {
+      case 0:
+        return forward != null ? forward.getRowTaskCount() : 0;
+      case 1:
+        int columnBlock = getBufferOwner().getColumnBlock();
+        return (inverse.getWidth() + columnBlock - 1) / columnBlock;
+      default:
+        return inverse.getRowTaskCount();
+    }
+  }
+
+  private void executeTask(int phase, int task) {
+    switch (phase) {
+      case 0:
+        forward.executeRowTask(task, outputTabularData);
+        break;
+      case 1:
+        executeColumnBlock(task);
+        break;
+      default:
+        inverse.executeRowTask(task, outputTabularData);
+        break;
+    }
+  }
+
+  private FftTransform2D getBufferOwner() {
+    return forward != null ? forward : inverse;
+  }
+
+  private void executeColumnBlock(int block) {
+    FftTransform2D bufferOwner = getBufferOwner();
+    int width = inverse.getWidth();
+    int height = inverse.getHeight();
+    int columnBlock = bufferOwner.getColumnBlock();
+    double[] buffer = bufferOwner.getColumnBuffer();
+    int firstCol = block * columnBlock;
+    int colCount = Math.min(columnBlock, width - firstCol);
+    if (forward != null) {
+      for (int c = 0; c < colCount; c++) {
+        int indexOffset = (firstCol + c) * height;
+        for (int row = 0; row < height; row++) {
+          buffer[row * colCount + c] = outputTabularData[indexOffset + row];
+        }
+      }
+      forward.transformColumns(buffer, colCount);
+      for (int c = 0; c < colCount; c++) {
+        kernel.filterColumn(firstCol + c, buffer, c, colCount, buffer, c, colCount);
+      }
+    } else {
+      for (int c = 0; c < colCount; c++) {
+        int col = firstCol + c;
+        kernel.filterColumn(col, inputTabularData, (col + kernel.getShiftX()) * height, 1, buffer, c, colCount);
+      }
+    }
+    inverse.transformColumns(buffer, colCount);
+    for (int c = 0; c < colCount; c++) {
+      int indexOffset = (firstCol + c) * height;
+      for (int row = 0; row < height; row++) {
+        outputTabularData[indexOffset + row] = buffer[row * colCount + c];
+      }
+    }
+  }
+
+  public double[] getOutputData() {
+    return outputTabularData;
+  }
+}
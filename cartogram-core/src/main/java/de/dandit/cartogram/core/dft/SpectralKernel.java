@@ -0,0 +1,83 @@
+package de.dandit.cartogram.core.dft;
+
+/**
+ * The factors a spectrum is multiplied with by a {@link SpectralConvolution2D}. The filtered spectrum at (i,j) is
+ * factor(i,j) * spectrum(i+shiftX, j+shiftY), and 0 where the shifted index is outside of the spectrum. A shift maps
+ * the cosine coefficients of a function to the sine coefficients of its derivative.
+ */
+public final class SpectralKernel {
+  private final int width;
+  private final int height;
+  private final double[] values; // column-major like the spectrum, null if the kernel is separable
+  private final double[] factorsX; // if separable: factor(i,j) = factorsX[i] * factorsY[j]
+  private final double[] factorsY;
+  private final int shiftX;
+  private final int shiftY;
+
+  private SpectralKernel(int width, int height, double[] values, double[] factorsX, double[] factorsY,
+                         int shiftX, int shiftY) {
+    if (shiftX < 0 || shiftY < 0) {
+      throw new IllegalArgumentException("Shifts must not be negative: " + shiftX + ", " + shiftY);
+    }
+    this.width = width;
+    this.height = height;
+    this.values = values;
+    this.factorsX = factorsX;
+    this.factorsY = factorsY;
+    this.shiftX = shiftX;
+    this.shiftY = shiftY;
+  }
+
+  /**
+   * @param values The factor of every element of the spectrum, column-major.
+   */
+  public static SpectralKernel ofValues(int width, int height, double[] values) {
+    if (values.length != width * height) {
+      throw new IllegalArgumentException("Array size does not match width*height!");
+    }
+    return new SpectralKernel(width, height, values, null, null, 0, 0);
+  }
+
+  /**
+   * @return A kernel whose factor at (i,j) is factorsX[i] * factorsY[j], which needs a table per axis instead of one
+   * for the whole spectrum.
+   */
+  public static SpectralKernel ofSeparable(double[] factorsX, double[] factorsY) {
+    return new SpectralKernel(factorsX.length, factorsY.length, null, factorsX, factorsY, 0, 0);
+  }
+
+  public SpectralKernel withShift(int shiftX, int shiftY) {
+    return new SpectralKernel(width, height, values, factorsX, factorsY, shiftX, shiftY);
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getShiftX() {
+    return shiftX;
+  }
+
+  /**
+   * Writes column i of the filtered spectrum to target[targetOffset + j * targetStride]. Element j of the spectrum
+   * column i+shiftX is read from source[sourceOffset + j * sourceStride]. Source and target may be the same, as
+   * elements are only read at or after the one that is written.
+   */
+  void filterColumn(int i, double[] source, int sourceOffset, int sourceStride,
+                    double[] target, int targetOffset, int targetStride) {
+    int end = i + shiftX < width ? height - shiftY : 0;
+    int valuesOffset = i * height;
+    double factorX = values == null ? factorsX[i] : 0.;
+    for (int j = 0; j < end; j++) {
+      double factor = values == null ? factorX * factorsY[j] : values[valuesOffset + j];
+      target[targetOffset + j * targetStride] = factor * source[sourceOffset + (j + shiftY) * sourceStride];
+    }
+    for (int j = Math.max(end, 0); j < height; j++) {
+      target[targetOffset + j * targetStride] = 0.;
+    }
+  }
+}
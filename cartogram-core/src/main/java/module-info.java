@@ -1,5 +1,7 @@
 module de.dandit.cartogram.core {
   requires java.logging;
+  // sun.misc.Unsafe frees the memory of off-heap grid fields when a calculation finishes
+  requires jdk.unsupported;
 
   exports de.dandit.cartogram.core.api;
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package de.dandit.cartogram.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import de.dandit.cartogram.core.api.CartogramConfig;
+import de.dandit.cartogram.core.api.FftPlanFactory;
+import de.dandit.cartogram.core.api.GridStorage;
+import de.dandit.cartogram.core.api.LightPolygon;
+import de.dandit.cartogram.core.api.Logging;
+import de.dandit.cartogram.core.api.MapFeatureData;
+import de.dandit.cartogram.core.api.ParallelismConfig;
+import de.dandit.cartogram.core.api.Region;
+import de.dandit.cartogram.core.context.CartogramContext;
+import de.dandit.cartogram.core.context.MapGrid;
+import de.dandit.cartogram.core.context.MapGridSource;
+import org.junit.jupiter.api.Test;
+
+public class DensityTest {
+
+  @Test
+  public void regionRunsGiveSameInitialDensityAsDenseGrid() {
+    // the second region overlaps the first one between x=4 and x=5, the third has a hole
+    MapFeatureData featureData = new MapFeatureData(1, 3, 9, 9,
+      List.of(
+        createRegion(13, new double[] {2, 5, 5, 2, 2}, new double[] {8, 8, 4, 4, 8}, List.of(), List.of()),
+        createRegion(1337, new double[] {4, 6, 6, 4, 4}, new double[] {8, 8, 4, 4, 8}, List.of(), List.of()),
+        createRegion(42, new double[] {6, 8, 8, 6, 6}, new double[] {8, 8, 4, 4, 8},
+          List.of(new double[] {6.5, 7.5, 7.5, 6.5, 6.5}), List.of(new double[] {7, 7, 5, 5, 7}))),
+      new double[] {4500, 9000, 3000});
+    CartogramConfig config = new CartogramConfig(
+      0.01,
+      true,
+      Logging.ofStandardOutput(),
+      FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()),
+      true,
+      ParallelismConfig.ofCommonPool());
+
+    MapGridSource gridSource = (lx, ly, initialDeltaX, initialDeltaY, initialScalingFactor, useRegionRuns) ->
+      new MapGrid(config.getFftPlanFactory(), GridStorage.ofHeap(), lx, ly, initialDeltaX, initialDeltaY,
+        initialScalingFactor, useRegionRuns);
+
+    CartogramContext denseContext = Density.initializeContext(featureData, config, gridSource, Long.MAX_VALUE);
+    CartogramContext runsContext = Density.initializeContext(featureData, config, gridSource, 0);
+
+    assertFalse(denseContext.getMapGrid().isUseRegionRuns());
+    assertTrue(denseContext.getMapGrid().isRegionsOverlapInGrid());
+    assertTrue(runsContext.getMapGrid().isUseRegionRuns());
+    assertArrayEquals(denseContext.getMapGrid().getRhoInit(), runsContext.getMapGrid().getRhoInit(), 0.);
+  }
+
+  private static Region createRegion(int id, double[] exteriorX, double[] exteriorY,
+                                     List<double[]> interiorX, List<double[]> interiorY) {
+    return new Region(id, 1, List.of(new LightPolygon(exteriorX, exteriorY, interiorX, interiorY)));
+  }
+}
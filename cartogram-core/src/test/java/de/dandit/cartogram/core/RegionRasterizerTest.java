@@ -0,0 +1,89 @@
+package de.dandit.cartogram.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import de.dandit.cartogram.core.context.PackedRings;
+import de.dandit.cartogram.core.context.RegionRuns;
+import org.junit.jupiter.api.Test;
+
+public class RegionRasterizerTest {
+
+  private static final int[][] RINGS_IN_REGION = {{0, 1}, {2}};
+  private static final int LX = 10;
+  private static final int LY = 10;
+
+  @Test
+  public void rasterizeRespectsHoles() {
+    double[][] ringsX = {{1, 1, 7, 7, 1}, {3, 5, 5, 3, 3}, {7, 7, 8, 8, 7}};
+    double[][] ringsY = {{1, 7, 7, 1, 1}, {3, 3, 5, 5, 3}, {1, 7, 7, 1, 1}};
+    int[] grid = new int[LX * LY];
+
+    boolean overlapFree = RegionRasterizer.rasterize(RINGS_IN_REGION, PackedRings.pack(ringsX, ringsY), LY, grid);
+
+    assertTrue(overlapFree);
+    assertArrayEquals(new int[] {-1, 0, 0, 0, 0, 0, 0, -1, -1, -1}, column(grid, 2));
+    assertArrayEquals(new int[] {-1, 0, 0, -1, -1, 0, 0, -1, -1, -1}, column(grid, 4));
+    assertArrayEquals(new int[] {-1, 1, 1, 1, 1, 1, 1, -1, -1, -1}, column(grid, 7));
+    assertArrayEquals(new int[] {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1}, column(grid, 8));
+  }
+
+  @Test
+  public void updateMatchesRasterizeFromScratch() {
+    double[][] previousRingsX = {{1, 1, 7, 7, 1}, {3, 5, 5, 3, 3}, {7, 7, 8, 8, 7}};
+    double[][] previousRingsY = {{1, 7, 7, 1, 1}, {3, 3, 5, 5, 3}, {1, 7, 7, 1, 1}};
+    double[][] ringsX = {{1.2, 0.8, 6.1, 6.3, 1.2}, {3.4, 5.2, 4.9, 3.1, 3.4}, {6.3, 6.1, 8.7, 8.4, 6.3}};
+    double[][] ringsY = {{1.3, 7.6, 7.2, 0.9, 1.3}, {3.1, 2.6, 4.8, 5.3, 3.1}, {0.9, 7.2, 7.4, 1.2, 0.9}};
+    int[] grid = new int[LX * LY];
+    int[] expectedGrid = new int[LX * LY];
+    RegionRasterizer.rasterize(RINGS_IN_REGION, PackedRings.pack(previousRingsX, previousRingsY), LY, grid);
+    RegionRasterizer.rasterize(RINGS_IN_REGION, PackedRings.pack(ringsX, ringsY), LY, expectedGrid);
+
+    boolean updated = RegionRasterizer.update(
+      RINGS_IN_REGION, PackedRings.pack(previousRingsX, previousRingsY), PackedRings.pack(ringsX, ringsY), LY, grid);
+
+    assertTrue(updated);
+    assertArrayEquals(expectedGrid, grid);
+  }
+
+  @Test
+  public void updateFailsForOverlappingRegions() {
+    double[][] previousRingsX = {{1, 1, 7, 7, 1}, {3, 5, 5, 3, 3}, {7, 7, 8, 8, 7}};
+    double[][] previousRingsY = {{1, 7, 7, 1, 1}, {3, 3, 5, 5, 3}, {1, 7, 7, 1, 1}};
+    double[][] ringsX = {{1, 1, 7, 7, 1}, {3, 5, 5, 3, 3}, {5, 5, 8, 8, 5}};
+    double[][] ringsY = {{1, 7, 7, 1, 1}, {3, 3, 5, 5, 3}, {1, 7, 7, 1, 1}};
+    int[] grid = new int[LX * LY];
+    RegionRasterizer.rasterize(RINGS_IN_REGION, PackedRings.pack(previousRingsX, previousRingsY), LY, grid);
+
+    boolean updated = RegionRasterizer.update(
+      RINGS_IN_REGION, PackedRings.pack(previousRingsX, previousRingsY), PackedRings.pack(ringsX, ringsY), LY, grid);
+
+    assertFalse(updated);
+    assertFalse(RegionRasterizer.rasterize(RINGS_IN_REGION, PackedRings.pack(ringsX, ringsY), LY, grid));
+  }
+
+  @Test
+  public void rasterizeRunsMatchesRasterize() {
+    double[][] ringsX = {{1.2, 0.8, 6.1, 6.3, 1.2}, {3.4, 5.2, 4.9, 3.1, 3.4}, {4.3, 4.1, 8.7, 8.4, 4.3}};
+    double[][] ringsY = {{1.3, 7.6, 7.2, 0.9, 1.3}, {3.1, 2.6, 4.8, 5.3, 3.1}, {0.9, 7.2, 7.4, 1.2, 0.9}};
+    int[] expectedGrid = new int[LX * LY];
+    RegionRasterizer.rasterize(RINGS_IN_REGION, PackedRings.pack(ringsX, ringsY), LY, expectedGrid);
+
+    RegionRuns runs = RegionRasterizer.rasterizeRuns(RINGS_IN_REGION, PackedRings.pack(ringsX, ringsY), LX, LY);
+
+    int[] grid = new int[LX * LY];
+    for (int x = 0; x < LX; x++) {
+      for (int y = 0; y < LY; y++) {
+        grid[x * LY + y] = runs.getRegionIndex(x, y);
+      }
+    }
+    assertArrayEquals(expectedGrid, grid);
+  }
+
+  private static int[] column(int[] grid, int x) {
+    return Arrays.copyOfRange(grid, x * LY, (x + 1) * LY);
+  }
+}
@@ -3,8 +3,13 @@ package de.dandit.cartogram.core.api;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -280,6 +285,254 @@ public class CartogramApiTest {
     assertInBounds(originalBoxMinX, originalBoxMinY, originalBoxMaxX, originalBoxMaxY, polygon2);
   }
 
+  @Test
+  public void offHeapGridStorageGivesSameResult() throws ConvergenceGoalFailedException {
+    MapFeatureData mapFeatureData = twoRegionMapFeatureData();
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+
+    CartogramResult heapResult = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+    CartogramResult offHeapResult = new CartogramApi().calculateGaSeMo(mapFeatureData, config.withGridStorage(GridStorage.ofOffHeap()));
+
+    assertEquals(heapResult.getMaximumAreaError(), offHeapResult.getMaximumAreaError());
+    for (int i = 0; i < 2; i++) {
+      LightPolygon heapPolygon = heapResult.getResultRegions().get(i).getPolygons().get(0);
+      LightPolygon offHeapPolygon = offHeapResult.getResultRegions().get(i).getPolygons().get(0);
+      assertArrayEquals(heapPolygon.getExteriorRingX(), offHeapPolygon.getExteriorRingX(), 0.);
+      assertArrayEquals(heapPolygon.getExteriorRingY(), offHeapPolygon.getExteriorRingY(), 0.);
+    }
+    assertArrayEquals(heapResult.getGridProjectionX(), offHeapResult.getGridProjectionX(), 0.);
+    assertArrayEquals(heapResult.getGridProjectionY(), offHeapResult.getGridProjectionY(), 0.);
+  }
+
+  @Test
+  public void radix4FftPlannerGivesSameResult() throws ConvergenceGoalFailedException {
+    MapFeatureData mapFeatureData = twoRegionMapFeatureData();
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+    CartogramConfig radix4Config = defaultConfig(FftPlanFactory.ofRadix4(ParallelismConfig.ofCommonPool()));
+
+    CartogramResult result = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+    CartogramResult radix4Result = new CartogramApi().calculateGaSeMo(mapFeatureData, radix4Config);
+
+    assertEquals(result.getMaximumAreaError(), radix4Result.getMaximumAreaError(), 1E-9);
+    for (int i = 0; i < 2; i++) {
+      LightPolygon polygon = result.getResultRegions().get(i).getPolygons().get(0);
+      LightPolygon radix4Polygon = radix4Result.getResultRegions().get(i).getPolygons().get(0);
+      assertArrayEquals(polygon.getExteriorRingX(), radix4Polygon.getExteriorRingX(), 1E-9);
+      assertArrayEquals(polygon.getExteriorRingY(), radix4Polygon.getExteriorRingY(), 1E-9);
+    }
+  }
+
+  @Test
+  public void pooledMapGridGivesSameResult() throws ConvergenceGoalFailedException {
+    MapFeatureData mapFeatureData = twoRegionMapFeatureData();
+    MapFeatureData otherMapFeatureData = new MapFeatureData(1, 3, 6, 9,
+        mapFeatureData.getRegions(),
+        new double[] {9000, 4500});
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+    CartogramConfig pooledConfig = config.withMapGridPool(MapGridPool.ofMaxRetainedBytes(Long.MAX_VALUE));
+
+    CartogramResult unpooledResult = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+    CartogramResult otherPooledResult = new CartogramApi().calculateGaSeMo(otherMapFeatureData, pooledConfig);
+    double[] otherProjectionX = otherPooledResult.getGridProjectionX().clone();
+    CartogramResult pooledResult = new CartogramApi().calculateGaSeMo(mapFeatureData, pooledConfig);
+
+    assertEquals(unpooledResult.getMaximumAreaError(), pooledResult.getMaximumAreaError());
+    for (int i = 0; i < 2; i++) {
+      LightPolygon unpooledPolygon = unpooledResult.getResultRegions().get(i).getPolygons().get(0);
+      LightPolygon pooledPolygon = pooledResult.getResultRegions().get(i).getPolygons().get(0);
+      assertArrayEquals(unpooledPolygon.getExteriorRingX(), pooledPolygon.getExteriorRingX(), 0.);
+      assertArrayEquals(unpooledPolygon.getExteriorRingY(), pooledPolygon.getExteriorRingY(), 0.);
+    }
+    assertArrayEquals(unpooledResult.getGridProjectionX(), pooledResult.getGridProjectionX(), 0.);
+    assertArrayEquals(unpooledResult.getGridProjectionY(), pooledResult.getGridProjectionY(), 0.);
+    assertArrayEquals(otherProjectionX, otherPooledResult.getGridProjectionX(), 0.);
+  }
+
+  @Test
+  public void untrackedGridProjectionGivesSameRegions() throws ConvergenceGoalFailedException {
+    MapFeatureData mapFeatureData = twoRegionMapFeatureData();
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+
+    CartogramResult trackedResult = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+    CartogramResult untrackedResult = new CartogramApi().calculateGaSeMo(mapFeatureData, config.withGridProjectionTracking(false));
+
+    assertTrue(trackedResult.hasGridProjection());
+    assertFalse(untrackedResult.hasGridProjection());
+    assertNull(untrackedResult.getGridProjectionX());
+    assertEquals(trackedResult.getMaximumAreaError(), untrackedResult.getMaximumAreaError());
+    for (int i = 0; i < 2; i++) {
+      LightPolygon trackedPolygon = trackedResult.getResultRegions().get(i).getPolygons().get(0);
+      LightPolygon untrackedPolygon = untrackedResult.getResultRegions().get(i).getPolygons().get(0);
+      assertArrayEquals(trackedPolygon.getExteriorRingX(), untrackedPolygon.getExteriorRingX(), 0.);
+      assertArrayEquals(trackedPolygon.getExteriorRingY(), untrackedPolygon.getExteriorRingY(), 0.);
+    }
+  }
+
+  @Test
+  public void gridProjectionProjectsPointsLikeRegions() throws ConvergenceGoalFailedException {
+    MapFeatureData mapFeatureData = twoRegionMapFeatureData();
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+
+    CartogramResult result = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+
+    LightPolygon inputPolygon = mapFeatureData.getRegions().get(1).getPolygons().get(0);
+    double[] projectedX = new double[inputPolygon.getExteriorRingX().length];
+    double[] projectedY = new double[projectedX.length];
+    result.getGridProjection().project(inputPolygon.getExteriorRingX(), inputPolygon.getExteriorRingY(), projectedX, projectedY,
+      ParallelismConfig.ofCommonPool());
+    LightPolygon resultPolygon = result.getResultRegions().get(1).getPolygons().get(0);
+    assertArrayEquals(resultPolygon.getExteriorRingX(), projectedX, 0.01);
+    assertArrayEquals(resultPolygon.getExteriorRingY(), projectedY, 0.01);
+  }
+
+  @Test
+  public void projectionSnapshotsEndAtResultRegions() throws ConvergenceGoalFailedException {
+    MapFeatureData mapFeatureData = twoRegionMapFeatureData();
+    List<Double> snapshotTimes = new ArrayList<>();
+    List<Integer> snapshotIntegrations = new ArrayList<>();
+    List<List<ResultRegion>> lastSnapshotRegions = new ArrayList<>();
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()))
+      .withProjectionSnapshots(ProjectionSnapshots.ofEquidistant(4, snapshot -> {
+        snapshotTimes.add(snapshot.getTime());
+        snapshotIntegrations.add(snapshot.getIntegration());
+        lastSnapshotRegions.clear();
+        lastSnapshotRegions.add(snapshot.createResultRegions());
+      }));
+
+    CartogramResult result = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+
+    assertFalse(snapshotTimes.isEmpty());
+    for (int i = 0; i < snapshotTimes.size(); i++) {
+      assertEquals((i % 4 + 1) / 4., (double) snapshotTimes.get(i));
+      assertEquals(i / 4 + 1, (int) snapshotIntegrations.get(i));
+    }
+    LightPolygon snapshotPolygon = lastSnapshotRegions.get(0).get(1).getPolygons().get(0);
+    LightPolygon resultPolygon = result.getResultRegions().get(1).getPolygons().get(0);
+    assertArrayEquals(resultPolygon.getExteriorRingX(), snapshotPolygon.getExteriorRingX(), 0.01);
+    assertArrayEquals(resultPolygon.getExteriorRingY(), snapshotPolygon.getExteriorRingY(), 0.01);
+  }
+
+  @Test
+  public void geometryLayersAreProjectedLikeRegions() throws ConvergenceGoalFailedException {
+    MapFeatureData regionData = twoRegionMapFeatureData();
+    LightPolygon polygon2 = regionData.getRegions().get(1).getPolygons().get(0);
+    GeometryLayer layer = new GeometryLayer(7,
+      List.of(polygon2.getExteriorRingX(), new double[] {3}, new double[] {2.5, 4, 5.5}),
+      List.of(polygon2.getExteriorRingY(), new double[] {5}, new double[] {6, 6.5, 7}));
+    MapFeatureData mapFeatureData = new MapFeatureData(1, 3, 6, 9,
+        regionData.getRegions(),
+        new double[] {4500, 9000},
+        List.of(layer));
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+
+    CartogramResult result = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+
+    assertEquals(1, result.getResultLayers().size());
+    GeometryLayer resultLayer = result.getResultLayers().get(0);
+    assertEquals(7, resultLayer.getLayerId());
+    LightPolygon resultPolygon = result.getResultRegions().get(1).getPolygons().get(0);
+    assertArrayEquals(resultPolygon.getExteriorRingX(), resultLayer.getPartsX().get(0), 1e-9);
+    assertArrayEquals(resultPolygon.getExteriorRingY(), resultLayer.getPartsY().get(0), 1e-9);
+    for (int part = 1; part < layer.getPartsX().size(); part++) {
+      double[] projectedX = new double[layer.getPartsX().get(part).length];
+      double[] projectedY = new double[projectedX.length];
+      result.getGridProjection().project(layer.getPartsX().get(part), layer.getPartsY().get(part), projectedX, projectedY,
+        ParallelismConfig.ofCommonPool());
+      assertArrayEquals(projectedX, resultLayer.getPartsX().get(part), 0.01);
+      assertArrayEquals(projectedY, resultLayer.getPartsY().get(part), 0.01);
+    }
+  }
+
+  @Test
+  public void inverseGridProjectionRestoresProjectedPoints() throws ConvergenceGoalFailedException {
+    MapFeatureData mapFeatureData = twoRegionMapFeatureData();
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+    CartogramResult result = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+
+    double[] pointsX = new double[100];
+    double[] pointsY = new double[100];
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 10; j++) {
+        pointsX[i * 10 + j] = 1.25 + i * 0.5;
+        pointsY[i * 10 + j] = 3.25 + j * 0.6;
+      }
+    }
+    double[] projectedX = new double[100];
+    double[] projectedY = new double[100];
+    result.getGridProjection().project(pointsX, pointsY, projectedX, projectedY, ParallelismConfig.ofCommonPool());
+    double[] restoredX = new double[100];
+    double[] restoredY = new double[100];
+    result.getGridProjection().createInverse().inverse(projectedX, projectedY, restoredX, restoredY, ParallelismConfig.ofCommonPool());
+
+    assertArrayEquals(pointsX, restoredX, 1e-6);
+    assertArrayEquals(pointsY, restoredY, 1e-6);
+  }
+
+  @Test
+  public void mappedGridProjectionFileProjectsLikeResult() throws ConvergenceGoalFailedException, IOException {
+    MapFeatureData mapFeatureData = twoRegionMapFeatureData();
+    CartogramConfig config = defaultConfig(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+    CartogramResult result = new CartogramApi().calculateGaSeMo(mapFeatureData, config);
+    double[] pointsX = new double[] {1.5, 3.25, 5.5, 5.9};
+    double[] pointsY = new double[] {3.5, 6.75, 4.1, 8.8};
+    double[] expectedX = new double[pointsX.length];
+    double[] expectedY = new double[pointsX.length];
+    result.getGridProjection().project(pointsX, pointsY, expectedX, expectedY, ParallelismConfig.ofSingleThreaded());
+
+    Path file = Files.createTempFile("projection", ".cgpf");
+    try {
+      for (GridProjectionFile.Encoding encoding : GridProjectionFile.Encoding.values()) {
+        GridProjectionFile.write(result.getGridProjection(), encoding, file);
+        GridProjection mapped = GridProjectionFile.map(file);
+        double[] projectedX = new double[pointsX.length];
+        double[] projectedY = new double[pointsX.length];
+        mapped.project(pointsX, pointsY, projectedX, projectedY, ParallelismConfig.ofSingleThreaded());
+
+        double tolerance = encoding == GridProjectionFile.Encoding.FLOAT64 ? 1e-12 : 1e-5;
+        assertArrayEquals(expectedX, projectedX, tolerance);
+        assertArrayEquals(expectedY, projectedY, tolerance);
+        assertArrayEquals(result.getGridProjectionX(), mapped.getProjectionX(), tolerance * 100);
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * @return Two adjacent regions of which the first has triple the size of the second but should only be half its size.
+   */
+  private static MapFeatureData twoRegionMapFeatureData() {
+    Region region1 = new Region(
+        13,
+        5,
+      List.of(new LightPolygon(
+        new double[] {2,5,5,2,2},
+        new double[] {8,8,4,4,8},
+        List.of(),
+        List.of())));
+    Region region2 = new Region(
+        1337,
+        10,
+      List.of(new LightPolygon(
+        new double[] {5,6,6,5,5},
+        new double[] {8,8,4,4,8},
+        List.of(),
+        List.of())));
+    return new MapFeatureData(1, 3, 6, 9,
+        List.of(region1, region2),
+        new double[] {4500, 9000});
+  }
+
+  private static CartogramConfig defaultConfig(FftPlanFactory fftPlanFactory) {
+    return new CartogramConfig(
+        0.01,
+        true,
+        Logging.ofStandardOutput(),
+        fftPlanFactory,
+        true,
+        ParallelismConfig.ofCommonPool());
+  }
+
   private void assertInBounds(
       double originalBoxMinX,
       double originalBoxMinY,
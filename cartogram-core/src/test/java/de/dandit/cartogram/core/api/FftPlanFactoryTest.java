@@ -0,0 +1,82 @@
+package de.dandit.cartogram.core.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import de.dandit.cartogram.core.dft.DefaultFftPlanner;
+import de.dandit.cartogram.core.dft.FftPlan2D;
+import org.junit.jupiter.api.Test;
+
+public class FftPlanFactoryTest {
+
+  @Test
+  public void builtInFactoriesAreShared() {
+    assertSame(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()),
+        FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()));
+    assertNotSame(FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool()),
+        FftPlanFactory.ofDefault(ParallelismConfig.ofSingleThreaded()));
+  }
+
+  @Test
+  public void plansOfSameTypeAndSizeShareTheirTransform() {
+    FftPlanFactory factory = FftPlanFactory.of(new DefaultFftPlanner(ParallelismConfig.ofCommonPool()));
+    double[] input = new double[32 * 16];
+    for (int i = 0; i < input.length; i++) {
+      input[i] = Math.sin(i);
+    }
+    double[] output = new double[input.length];
+    double[] otherOutput = new double[input.length];
+    FftPlan2D plan = factory.createDCT2_2D(32, 16, input, output);
+    FftPlan2D otherPlan = factory.createDCT2_2D(32, 16, input, otherOutput);
+    FftPlan2D inversePlan = factory.createDCT3_2D(32, 16, input, output);
+
+    assertSame(plan.getTransform(), otherPlan.getTransform());
+    assertNotSame(plan.getTransform(), inversePlan.getTransform());
+    assertEquals(2, factory.getCachedTransformCount());
+    plan.execute();
+    otherPlan.execute();
+    assertSame(otherOutput, otherPlan.getOutputData());
+    assertArrayEquals(output, otherOutput);
+  }
+
+  @Test
+  public void measuringFactoryLoadsSavedWisdom() throws IOException {
+    FftPlanFactory factory = FftPlanFactory.ofMeasuring(ParallelismConfig.ofCommonPool());
+    double[] input = new double[64 * 32];
+    for (int i = 0; i < input.length; i++) {
+      input[i] = Math.sin(i);
+    }
+    double[] expected = new double[input.length];
+    double[] output = new double[input.length];
+    FftPlanFactory.ofDefault(ParallelismConfig.ofSingleThreaded()).createDCT2_2D(64, 32, input, expected).execute();
+    factory.createDCT2_2D(64, 32, input, output).execute();
+    assertTrue(factory.isMeasuring());
+    assertArrayEquals(expected, output, 1E-9);
+
+    Path file = Files.createTempFile("wisdom", ".txt");
+    try {
+      factory.saveWisdom(file);
+      assertTrue(Files.readAllLines(file).stream().anyMatch(line -> line.startsWith("DCT2 64 32 ")));
+      FftPlanFactory loaded = FftPlanFactory.ofMeasuring(ParallelismConfig.ofCommonPool());
+      loaded.loadWisdom(file);
+      double[] loadedOutput = new double[input.length];
+      loaded.createDCT2_2D(64, 32, input, loadedOutput).execute();
+      assertArrayEquals(expected, loadedOutput, 1E-9);
+
+      FftPlanFactory defaultFactory = FftPlanFactory.ofDefault(ParallelismConfig.ofCommonPool());
+      assertFalse(defaultFactory.isMeasuring());
+      assertThrows(IllegalStateException.class, () -> defaultFactory.saveWisdom(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
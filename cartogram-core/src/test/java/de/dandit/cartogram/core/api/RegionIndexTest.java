@@ -0,0 +1,127 @@
+package de.dandit.cartogram.core.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class RegionIndexTest {
+
+  // a square with a hole, an island in the hole and a triangle touching the square
+  private static final List<ResultRegion> REGIONS = List.of(
+    new ResultRegion(13, List.of(new LightPolygon(
+      new double[] {1, 1, 7, 7, 1},
+      new double[] {1, 7, 7, 1, 1},
+      List.of(new double[] {3, 5, 5, 3, 3}),
+      List.of(new double[] {3, 3, 5, 5, 3}))), false),
+    new ResultRegion(-4, List.of(
+      new LightPolygon(
+        new double[] {3.5, 3.5, 4.5, 4.5, 3.5},
+        new double[] {3.5, 4.5, 4.5, 3.5, 3.5},
+        List.of(),
+        List.of()),
+      new LightPolygon(
+        new double[] {7, 7, 9.5, 7},
+        new double[] {1, 7, 2, 1},
+        List.of(),
+        List.of())), false));
+
+  @Test
+  public void findRegionRespectsHolesAndIslands() {
+    RegionIndex index = RegionIndex.create(REGIONS, ParallelismConfig.ofSingleThreaded());
+
+    assertEquals(0, index.findRegionIndex(2, 2));
+    assertEquals(-1, index.findRegionIndex(3.2, 3.2));
+    assertEquals(1, index.findRegionIndex(4, 4));
+    assertEquals(1, index.findRegionIndex(8, 3));
+    assertEquals(-1, index.findRegionIndex(9, 6));
+    assertEquals(-1, index.findRegionIndex(0, 0));
+    assertEquals(13, index.findRegion(6.5, 6.5).getRegionId());
+    assertNull(index.findRegion(20, 4));
+  }
+
+  @Test
+  public void findRegionIndicesMatchesLinearScan() {
+    assertMatchesLinearScan(REGIONS);
+  }
+
+  @Test
+  public void findRegionIndicesMatchesLinearScanForDetailedRings() {
+    // a jagged star with a jagged hole, so that the index has many buckets
+    int pointCount = 2000;
+    double[] starX = new double[pointCount + 1];
+    double[] starY = new double[pointCount + 1];
+    double[] holeX = new double[pointCount + 1];
+    double[] holeY = new double[pointCount + 1];
+    for (int k = 0; k < pointCount; k++) {
+      double angle = -2 * Math.PI * k / pointCount;
+      double radius = k % 2 == 0 ? 4 : 3.5;
+      starX[k] = 5 + radius * Math.cos(angle);
+      starY[k] = 4 + radius * Math.sin(angle);
+      holeX[k] = 5 + 0.5 * radius * Math.cos(-angle);
+      holeY[k] = 4 + 0.5 * radius * Math.sin(-angle);
+    }
+    starX[pointCount] = starX[0];
+    starY[pointCount] = starY[0];
+    holeX[pointCount] = holeX[0];
+    holeY[pointCount] = holeY[0];
+    List<ResultRegion> regions = List.of(
+      new ResultRegion(1, List.of(new LightPolygon(starX, starY, List.of(holeX), List.of(holeY))), false),
+      new ResultRegion(2, List.of(new LightPolygon(
+        new double[] {4.5, 4.5, 5.5, 5.5, 4.5},
+        new double[] {3.5, 4.5, 4.5, 3.5, 3.5},
+        List.of(),
+        List.of())), false));
+
+    assertMatchesLinearScan(regions);
+  }
+
+  private static void assertMatchesLinearScan(List<ResultRegion> regions) {
+    RegionIndex index = RegionIndex.create(regions, ParallelismConfig.ofCommonPool());
+    Random random = new Random(42);
+    int pointCount = 10000;
+    double[] xs = new double[pointCount];
+    double[] ys = new double[pointCount];
+    int[] expected = new int[pointCount];
+    for (int k = 0; k < pointCount; k++) {
+      xs[k] = random.nextDouble() * 10;
+      ys[k] = random.nextDouble() * 8;
+      expected[k] = findRegionIndexByScan(regions, xs[k], ys[k]);
+    }
+    int[] found = new int[pointCount];
+
+    index.findRegionIndices(xs, ys, found, ParallelismConfig.ofCommonPool());
+
+    assertArrayEquals(expected, found);
+  }
+
+  private static int findRegionIndexByScan(List<ResultRegion> regions, double x, double y) {
+    for (int regionIndex = 0; regionIndex < regions.size(); regionIndex++) {
+      for (LightPolygon polygon : regions.get(regionIndex).getPolygons()) {
+        boolean inside = isInside(polygon.getExteriorRingX(), polygon.getExteriorRingY(), x, y);
+        for (int i = 0; i < polygon.getInteriorRingsX().size(); i++) {
+          inside ^= isInside(polygon.getInteriorRingsX().get(i), polygon.getInteriorRingsY().get(i), x, y);
+        }
+        if (inside) {
+          return regionIndex;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isInside(double[] ringX, double[] ringY, double x, double y) {
+    boolean inside = false;
+    for (int i = 0, j = ringX.length - 1; i < ringX.length; j = i++) {
+      if ((ringY[i] > y) != (ringY[j] > y)
+        && x < (ringX[j] - ringX[i]) * (y - ringY[i]) / (ringY[j] - ringY[i]) + ringX[i]) {
+        inside = !inside;
+      }
+    }
+    return inside;
+  }
+}
@@ -0,0 +1,43 @@
+package de.dandit.cartogram.core.dft;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+
+import de.dandit.cartogram.core.api.Fft2DPlanner;
+import de.dandit.cartogram.core.api.ParallelismConfig;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class BatchedFftPlannerTest {
+
+  @ParameterizedTest
+  @CsvSource({"1, 2", "2, 2", "8, 64", "128, 32", "64, 64"})
+  public void matchesRadix4FftPlanner(int width, int height) {
+    Fft2DPlanner expectedPlanner = new Radix4FftPlanner(ParallelismConfig.ofSingleThreaded());
+    Fft2DPlanner batchedPlanner = new BatchedFftPlanner(ParallelismConfig.ofCommonPool());
+    Random random = new Random(width * 31L + height);
+    double[] input = new double[width * height];
+    for (int i = 0; i < input.length; i++) {
+      input[i] = random.nextDouble() - 0.5;
+    }
+    double[] expected = new double[input.length];
+    double[] output = new double[input.length];
+
+    expectedPlanner.createDCT2_2D(width, height, input, expected).execute();
+    batchedPlanner.createDCT2_2D(width, height, input, output).execute();
+    assertArrayEquals(expected, output);
+
+    expectedPlanner.createDCT3_2D(width, height, input, expected).execute();
+    batchedPlanner.createDCT3_2D(width, height, input, output).execute();
+    assertArrayEquals(expected, output);
+
+    expectedPlanner.createDCT3_DST3_2D(width, height, input, expected).execute();
+    batchedPlanner.createDCT3_DST3_2D(width, height, input, output).execute();
+    assertArrayEquals(expected, output);
+
+    expectedPlanner.createDST3_DCT3_2D(width, height, input, expected).execute();
+    batchedPlanner.createDST3_DCT3_2D(width, height, input, output).execute();
+    assertArrayEquals(expected, output);
+  }
+}
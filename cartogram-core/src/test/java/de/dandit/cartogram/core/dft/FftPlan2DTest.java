@@ -0,0 +1,42 @@
+package de.dandit.cartogram.core.dft;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+
+import de.dandit.cartogram.core.api.Fft2DPlanner;
+import de.dandit.cartogram.core.api.ParallelismConfig;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class FftPlan2DTest {
+
+  @ParameterizedTest
+  @CsvSource({"2, 2", "8, 64", "128, 32", "64, 64"})
+  public void executeAllMatchesSeparateExecution(int width, int height) {
+    for (Fft2DPlanner planner : new Fft2DPlanner[] {
+        new DefaultFftPlanner(ParallelismConfig.ofCommonPool()),
+        new BatchedFftPlanner(ParallelismConfig.ofCommonPool())}) {
+      Random random = new Random(width * 31L + height);
+      double[] inputX = new double[width * height];
+      double[] inputY = new double[width * height];
+      for (int i = 0; i < inputX.length; i++) {
+        inputX[i] = random.nextDouble() - 0.5;
+        inputY[i] = random.nextDouble() - 0.5;
+      }
+      double[] expectedX = new double[inputX.length];
+      double[] expectedY = new double[inputY.length];
+      planner.createDCT3_DST3_2D(width, height, inputX, expectedX).execute();
+      planner.createDST3_DCT3_2D(width, height, inputY, expectedY).execute();
+
+      double[] outputX = new double[inputX.length];
+      double[] outputY = new double[inputY.length];
+      FftPlan2D.executeAll(
+          planner.createDCT3_DST3_2D(width, height, inputX, outputX),
+          planner.createDST3_DCT3_2D(width, height, inputY, outputY));
+
+      assertArrayEquals(expectedX, outputX);
+      assertArrayEquals(expectedY, outputY);
+    }
+  }
+}
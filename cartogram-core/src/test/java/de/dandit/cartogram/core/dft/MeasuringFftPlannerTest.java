@@ -0,0 +1,53 @@
+package de.dandit.cartogram.core.dft;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import de.dandit.cartogram.core.api.FftPlanFactory;
+import de.dandit.cartogram.core.api.ParallelismConfig;
+import org.junit.jupiter.api.Test;
+
+public class MeasuringFftPlannerTest {
+
+  @Test
+  public void plansTransformsLikeTheDefaultPlanner() {
+    MeasuringFftPlanner planner = new MeasuringFftPlanner(ParallelismConfig.ofCommonPool());
+    FftPlanFactory.of(planner); // validates the planned transforms
+    double[] input = new double[32 * 16];
+    for (int i = 0; i < input.length; i++) {
+      input[i] = Math.sin(i);
+    }
+    double[] expected = new double[input.length];
+    double[] output = new double[input.length];
+    new DefaultFftPlanner(ParallelismConfig.ofSingleThreaded()).createDCT3_DST3_2D(32, 16, input, expected).execute();
+    planner.createDCT3_DST3_2D(32, 16, input, output).execute();
+    assertArrayEquals(expected, output, 1E-10);
+  }
+
+  @Test
+  public void savedWisdomIsLoaded() throws IOException {
+    MeasuringFftPlanner planner = new MeasuringFftPlanner(ParallelismConfig.ofCommonPool());
+    MeasuringFftPlanner.Candidate choice = planner.getChoice(MeasuringFftPlanner.TransformType.DCT2, 64, 32);
+    Path file = Files.createTempFile("wisdom", ".txt");
+    try {
+      planner.saveWisdom(file);
+      MeasuringFftPlanner loaded = new MeasuringFftPlanner(ParallelismConfig.ofCommonPool());
+      loaded.loadWisdom(file);
+      assertEquals(choice, loaded.getChoice(MeasuringFftPlanner.TransformType.DCT2, 64, 32));
+
+      Files.write(file, List.of("DCT3 64 64 BATCHED_PARALLEL", "DCT3 32 32 UNKNOWN_CANDIDATE"));
+      MeasuringFftPlanner singleThreaded = new MeasuringFftPlanner(ParallelismConfig.ofSingleThreaded());
+      singleThreaded.loadWisdom(file);
+      // parallel candidates are not measured by a single-threaded planner, so its own choice is measured
+      assertFalse(singleThreaded.getChoice(MeasuringFftPlanner.TransformType.DCT3, 64, 64).isParallel());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package de.dandit.cartogram.core.dft;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class Radix4FftTest {
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 4, 8, 16, 128, 1024})
+  public void matchesRadix2Fft(int length) {
+    Random random = new Random(length);
+    double[] real = new double[length];
+    double[] imag = new double[length];
+    for (int i = 0; i < length; i++) {
+      real[i] = random.nextDouble() - 0.5;
+      imag[i] = random.nextDouble() - 0.5;
+    }
+    double[] expectedReal = real.clone();
+    double[] expectedImag = imag.clone();
+    DftTables tables = DftTables.of(length);
+    Fft.transform(expectedReal, expectedImag, tables.getCosTable(), tables.getSinTable());
+
+    Radix4Fft.of(length).transform(real, 0, imag, 0);
+
+    assertArrayEquals(expectedReal, real, 1E-12);
+    assertArrayEquals(expectedImag, imag, 1E-12);
+  }
+}
@@ -0,0 +1,46 @@
+package de.dandit.cartogram.core.dft;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class RealDCTTest {
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 4, 8, 64, 512})
+  public void dct2MatchesComplexDct2(int length) {
+    double[] input = randomVector(length);
+    double[] expected = input.clone();
+    DftTables tables = DftTables.of(length);
+
+    DCT.transform(expected, tables, new double[length]);
+    RealDCT.transform(input, tables, new double[length]);
+
+    assertArrayEquals(expected, input, 1E-12);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 4, 8, 64, 512})
+  public void dct3MatchesComplexDct3(int length) {
+    double[] input = randomVector(length);
+    double[] expected = input.clone();
+    DftTables tables = DftTables.of(length);
+
+    DCT.inverseTransform(expected, tables, new double[length]);
+    RealDCT.inverseTransform(input, tables, new double[length]);
+
+    assertArrayEquals(expected, input, 1E-12);
+  }
+
+  private static double[] randomVector(int length) {
+    Random random = new Random(length);
+    double[] vector = new double[length];
+    for (int i = 0; i < length; i++) {
+      vector[i] = random.nextDouble() - 0.5;
+    }
+    return vector;
+  }
+}
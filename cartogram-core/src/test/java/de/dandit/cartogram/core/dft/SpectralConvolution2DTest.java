@@ -0,0 +1,87 @@
+package de.dandit.cartogram.core.dft;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Random;
+
+import de.dandit.cartogram.core.api.Fft2DPlanner;
+import de.dandit.cartogram.core.api.ParallelismConfig;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class SpectralConvolution2DTest {
+
+  @ParameterizedTest
+  @CsvSource({"2, 2", "8, 64", "128, 32", "1, 8"})
+  public void matchesSeparateTransformsAndMultiplication(int width, int height) {
+    Fft2DPlanner radix2 = new DefaultFftPlanner(ParallelismConfig.ofCommonPool());
+    Fft2DPlanner batched = new BatchedFftPlanner(ParallelismConfig.ofCommonPool());
+    double[] input = randomData(width, height);
+    double[] factorsX = randomData(width, 1);
+    double[] factorsY = randomData(1, height);
+
+    double[] spectrum = new double[input.length];
+    double[] expected = new double[input.length];
+    radix2.createDCT2_2D(width, height, input, spectrum).execute();
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < height; j++) {
+        spectrum[i * height + j] *= factorsX[i] * factorsY[j];
+      }
+    }
+    radix2.createDCT3_2D(width, height, spectrum, expected).execute();
+
+    SpectralKernel kernel = SpectralKernel.ofSeparable(factorsX, factorsY);
+    for (Fft2DPlanner forwardPlanner : new Fft2DPlanner[] {radix2, batched}) {
+      for (Fft2DPlanner inversePlanner : new Fft2DPlanner[] {radix2, batched}) {
+        double[] output = new double[input.length];
+        SpectralConvolution2D.of(
+            forwardPlanner.createDCT2_2D(width, height, input, output).getTransform(),
+            inversePlanner.createDCT3_2D(width, height, output, output).getTransform(),
+            kernel, input, output).execute();
+        assertArrayEquals(expected, output, 1E-9);
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @CsvSource({"2, 2", "8, 64", "128, 32", "1, 8"})
+  public void shiftedKernelMatchesShiftedMultiplication(int width, int height) {
+    Fft2DPlanner radix2 = new DefaultFftPlanner(ParallelismConfig.ofCommonPool());
+    Fft2DPlanner batched = new BatchedFftPlanner(ParallelismConfig.ofCommonPool());
+    double[] spectrum = randomData(width, height);
+    double[] values = randomData(width, height);
+
+    double[] expectedX = new double[spectrum.length];
+    double[] expectedY = new double[spectrum.length];
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < height; j++) {
+        int index = i * height + j;
+        expectedX[index] = i + 1 < width ? spectrum[index + height] * values[index] : 0.;
+        expectedY[index] = j + 1 < height ? spectrum[index + 1] * values[index] : 0.;
+      }
+    }
+    radix2.createDCT3_DST3_2D(width, height, expectedX, expectedX).execute();
+    radix2.createDST3_DCT3_2D(width, height, expectedY, expectedY).execute();
+
+    for (Fft2DPlanner planner : new Fft2DPlanner[] {radix2, batched}) {
+      double[] outputX = new double[spectrum.length];
+      double[] outputY = new double[spectrum.length];
+      SpectralConvolution2D.executeAll(
+          SpectralConvolution2D.ofSpectrum(planner.createDCT3_DST3_2D(width, height, outputX, outputX).getTransform(),
+              SpectralKernel.ofValues(width, height, values).withShift(1, 0), spectrum, outputX),
+          SpectralConvolution2D.ofSpectrum(planner.createDST3_DCT3_2D(width, height, outputY, outputY).getTransform(),
+              SpectralKernel.ofValues(width, height, values).withShift(0, 1), spectrum, outputY));
+      assertArrayEquals(expectedX, outputX, 1E-9);
+      assertArrayEquals(expectedY, outputY, 1E-9);
+    }
+  }
+
+  private static double[] randomData(int width, int height) {
+    Random random = new Random(width * 31L + height);
+    double[] data = new double[width * height];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = random.nextDouble() - 0.5;
+    }
+    return data;
+  }
+}
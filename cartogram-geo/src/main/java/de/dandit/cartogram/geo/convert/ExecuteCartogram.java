@@ -38,7 +38,7 @@ public class ExecuteCartogram {
       result.getResultRegions(),
       result.getGridProjectionX(),
       result.getGridProjectionY(),
-      true);
+      result.hasGridProjection());
   }
 
   public static void createCartogramToGeoJson(CartogramConfig config, InputStream geoJsonResource, InputStream dataResource,
@@ -1,5 +1,6 @@
 package de.dandit.cartogram.geo.convert;
 
+import de.dandit.cartogram.core.api.GeometryLayer;
 import de.dandit.cartogram.core.api.Region;
 import de.dandit.cartogram.core.api.LightPolygon;
 import org.locationtech.jts.geom.*;
@@ -95,4 +96,68 @@ public class GeometryConverter {
     }
     return geometry;
   }
+
+  /**
+   * Creates a layer to deform the given geometries along with the regions. Each geometry becomes one part that
+   * holds all its coordinates, so the projected layer can be applied to the geometries with
+   * {@link #applyLayer(List, GeometryLayer)}.
+   */
+  public GeometryLayer createLayer(int layerId, List<? extends Geometry> geometries) {
+    List<double[]> partsX = new ArrayList<>(geometries.size());
+    List<double[]> partsY = new ArrayList<>(geometries.size());
+    for (Geometry geometry : geometries) {
+      Coordinate[] coordinates = geometry.getCoordinates();
+      partsX.add(Arrays.stream(coordinates).mapToDouble(coord -> coord.x).toArray());
+      partsY.add(Arrays.stream(coordinates).mapToDouble(coord -> coord.y).toArray());
+    }
+    return new GeometryLayer(layerId, partsX, partsY);
+  }
+
+  /**
+   * @param geometries The geometries the layer was created from by {@link #createLayer(int, List)}.
+   * @param projectedLayer The projected layer of the cartogram result.
+   * @return Copies of the geometries with the projected coordinates.
+   */
+  public List<Geometry> applyLayer(List<? extends Geometry> geometries, GeometryLayer projectedLayer) {
+    if (geometries.size() != projectedLayer.getPartsX().size()) {
+      throw new IllegalArgumentException("Layer " + projectedLayer.getLayerId() + " has " + projectedLayer.getPartsX().size()
+        + " parts but there are " + geometries.size() + " geometries");
+    }
+    List<Geometry> projected = new ArrayList<>(geometries.size());
+    for (int i = 0; i < geometries.size(); i++) {
+      Geometry copy = geometries.get(i).copy();
+      copy.apply(new SetCoordinatesFilter(projectedLayer.getPartsX().get(i), projectedLayer.getPartsY().get(i)));
+      projected.add(copy);
+    }
+    return projected;
+  }
+
+  // visits the coordinates in the same order as getCoordinates()
+  private static class SetCoordinatesFilter implements CoordinateSequenceFilter {
+    private final double[] pointsX;
+    private final double[] pointsY;
+    private int index;
+
+    private SetCoordinatesFilter(double[] pointsX, double[] pointsY) {
+      this.pointsX = pointsX;
+      this.pointsY = pointsY;
+    }
+
+    @Override
+    public void filter(CoordinateSequence seq, int i) {
+      seq.setOrdinate(i, CoordinateSequence.X, pointsX[index]);
+      seq.setOrdinate(i, CoordinateSequence.Y, pointsY[index]);
+      index++;
+    }
+
+    @Override
+    public boolean isDone() {
+      return index >= pointsX.length;
+    }
+
+    @Override
+    public boolean isGeometryChanged() {
+      return true;
+    }
+  }
 }